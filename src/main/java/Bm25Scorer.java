@@ -0,0 +1,72 @@
+/**
+ * Ranks documents with Okapi BM25. The inverse document frequency of every
+ * word and the length normalization of every document are computed once when
+ * the scorer is created, so scoring a word only reads two arrays.
+ *
+ * @author Charles Sy
+ *
+ */
+public class Bm25Scorer implements ScorerInterface {
+	/** The default term frequency saturation. */
+	public static final double DEFAULT_K1 = 1.2;
+
+	/** The default strength of the document length normalization. */
+	public static final double DEFAULT_B = 0.75;
+
+	/**
+	 * The term frequency saturation
+	 */
+	private final double k1;
+
+	/**
+	 * The inverse document frequency of each word
+	 */
+	private final double[] idf;
+
+	/**
+	 * The length normalization of each document, k1 * (1 - b + b * length / average length)
+	 */
+	private final double[] norms;
+
+	/**
+	 * Constructor with the default parameters
+	 *
+	 * @param index the index being scored
+	 */
+	public Bm25Scorer(FrozenInvertedIndex index) {
+		this(index, DEFAULT_K1, DEFAULT_B);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param index the index being scored
+	 * @param k1 the term frequency saturation
+	 * @param b the strength of the document length normalization, between 0 and 1
+	 */
+	public Bm25Scorer(FrozenInvertedIndex index, double k1, double b) {
+		this.k1 = k1;
+		int documents = index.documents();
+
+		long total = 0;
+		for (int document = 0; document < documents; document++) {
+			total += index.count(document);
+		}
+		double average = documents == 0 ? 1 : Math.max(1, (double) total / documents);
+		this.norms = new double[documents];
+		for (int document = 0; document < documents; document++) {
+			norms[document] = k1 * (1 - b + b * index.count(document) / average);
+		}
+
+		this.idf = new double[index.size()];
+		for (int term = 0; term < idf.length; term++) {
+			double frequency = index.frequency(term);
+			idf[term] = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+		}
+	}
+
+	@Override
+	public double score(int term, int document, int frequency) {
+		return idf[term] * frequency * (k1 + 1) / (frequency + norms[document]);
+	}
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Measures how the time to build a {@link ConcurrentInvertedIndex} scales with
+ * the number of worker threads. Builds the index from the -text path once per
+ * thread count, doubling from 1 up to -threads (16 by default), and prints the
+ * elapsed time and speedup of each build. The optional -stripes flag sets the
+ * number of stripes of the index. The shared {@link CachingStemmer} is
+ * cleared before each timed build, so no build reuses the stems of the warm-up
+ * or an earlier build, and its hit rate during each build is printed too.
+ *
+ * @author Charles Sy
+ *
+ */
+public class BuildBenchmark {
+	/**
+	 * Runs the benchmark based on the provided command-line arguments.
+	 *
+	 * @param args flag/value pairs used to start this program
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		ArgumentMap map = new ArgumentMap(args);
+		if (!map.hasValue("-text")) {
+			System.out.println("Usage: BuildBenchmark -text path [-threads max] [-stripes count]");
+			return;
+		}
+		Path path = map.getPath("-text");
+		int max = map.getInteger("-threads", 16);
+		int stripes = map.getInteger("-stripes", ConcurrentInvertedIndex.DEFAULT_STRIPES);
+
+		// warm up the JIT before timing anything
+		build(path, max, stripes);
+
+		double baseline = 0;
+		for (int threads = 1; threads <= max; threads *= 2) {
+			CachingStemmer.shared().clear();
+			double seconds = build(path, threads, stripes);
+			if (threads == 1) {
+				baseline = seconds;
+			}
+			System.out.printf("threads: %2d  elapsed: %8.3f seconds  speedup: %5.2fx  stemmer hit rate: %6.2f%%%n",
+					threads, seconds, baseline / seconds, CachingStemmer.shared().hitRate() * 100);
+		}
+	}
+
+	/**
+	 * Builds a new index with the given number of worker threads. Each build
+	 * uses a new work queue, so the per-thread caches of the stemmer always
+	 * start empty.
+	 *
+	 * @param path the file or directory to index
+	 * @param threads the number of worker threads
+	 * @param stripes the number of stripes of the index
+	 * @return the elapsed time in seconds
+	 * @throws IOException if an IO error occurs
+	 */
+	private static double build(Path path, int threads, int stripes) throws IOException {
+		WorkQueue queue = new WorkQueue(threads);
+		try {
+			Instant start = Instant.now();
+			new MultithreadedInvertedIndexBuilder(new ConcurrentInvertedIndex(stripes), queue).add(path);
+			Duration elapsed = Duration.between(start, Instant.now());
+			return (double) elapsed.toNanos() / Duration.ofSeconds(1).toNanos();
+		}
+		finally {
+			queue.shutdown();
+		}
+	}
+}
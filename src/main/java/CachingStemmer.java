@@ -0,0 +1,215 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A thread-safe stemmer that remembers the stem of every word it has seen.
+ * Natural language uses a small number of words most of the time, so most
+ * words are only stemmed once no matter how many files, pages, or queries
+ * contain them.
+ *
+ * Each thread first checks a small cache of its own, which compares the word
+ * without creating a string, and then a table shared by every thread. Words
+ * in neither are stemmed by a {@link SnowballStemmer} owned by the thread,
+ * since those are not thread-safe. The shared table stops adding words once
+ * it is full, which keeps the most common words since they are seen first.
+ *
+ * @author Charles Sy
+ *
+ */
+public class CachingStemmer implements Stemmer {
+	/** The default maximum number of words in the shared table. */
+	public static final int DEFAULT_ENTRIES = 1 << 17;
+
+	/** The number of words in the cache of each thread. */
+	public static final int THREAD_ENTRIES = 1 << 10;
+
+	/**
+	 * The stemmer shared by the index builders, web crawler, query builders,
+	 * and search servlet
+	 */
+	private static final CachingStemmer SHARED = new CachingStemmer(TextFileStemmer.DEFAULT, DEFAULT_ENTRIES);
+
+	/**
+	 * The stem of every remembered word
+	 */
+	private final ConcurrentHashMap<String, String> stems;
+
+	/**
+	 * The maximum number of words in the shared table
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The stemmer and cache of each thread
+	 */
+	private final ThreadLocal<Local> locals;
+
+	/**
+	 * The number of words found in a cache
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * The number of words that had to be stemmed
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * The stemmer and small cache owned by one thread.
+	 */
+	private static class Local {
+		/**
+		 * The stemmer of this thread
+		 */
+		private final SnowballStemmer stemmer;
+
+		/**
+		 * The cached words, by hash code
+		 */
+		private final String[] words;
+
+		/**
+		 * The stem of each cached word
+		 */
+		private final String[] stems;
+
+		/**
+		 * Constructor
+		 *
+		 * @param algorithm the stemming algorithm
+		 */
+		public Local(SnowballStemmer.ALGORITHM algorithm) {
+			this.stemmer = new SnowballStemmer(algorithm);
+			this.words = new String[THREAD_ENTRIES];
+			this.stems = new String[THREAD_ENTRIES];
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param algorithm the stemming algorithm
+	 * @param maxEntries the maximum number of words in the shared table
+	 */
+	public CachingStemmer(SnowballStemmer.ALGORITHM algorithm, int maxEntries) {
+		this.stems = new ConcurrentHashMap<>();
+		this.maxEntries = Math.max(0, maxEntries);
+		this.locals = ThreadLocal.withInitial(() -> new Local(algorithm));
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the stemmer shared by the whole program.
+	 *
+	 * @return the shared stemmer
+	 */
+	public static CachingStemmer shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the stem of the word. The returned stem is always a string.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	@Override
+	public CharSequence stem(CharSequence word) {
+		Local local = locals.get();
+		int slot = hash(word) & (THREAD_ENTRIES - 1);
+		String cached = local.words[slot];
+		if (cached != null && cached.contentEquals(word)) {
+			hits.increment();
+			return local.stems[slot];
+		}
+
+		String key = word.toString();
+		String stem = stems.get(key);
+		if (stem != null) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+			stem = local.stemmer.stem(key).toString();
+			if (stems.size() < maxEntries) {
+				stems.putIfAbsent(key, stem);
+			}
+		}
+		local.words[slot] = key;
+		local.stems[slot] = stem;
+		return stem;
+	}
+
+	/**
+	 * Calculates the same hash code as {@link String#hashCode()} without
+	 * creating a string, and then spreads the high bits into the low bits.
+	 *
+	 * @param word the word to hash
+	 * @return the hash code
+	 */
+	private static int hash(CharSequence word) {
+		int hash = 0;
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + word.charAt(i);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Returns the number of words found in a cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of words that had to be stemmed.
+	 *
+	 * @return the number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the fraction of words found in a cache.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 if nothing was stemmed
+	 */
+	public double hitRate() {
+		long hits = hits();
+		long total = hits + misses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the number of words in the shared table.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return stems.size();
+	}
+
+	/**
+	 * Removes every word from the shared table and resets the counters. The
+	 * caches of each thread are kept, since stems never change.
+	 */
+	public void clear() {
+		stems.clear();
+		hits.reset();
+		misses.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d stems, %d hits, %d misses, %.2f%% hit rate", size(), hits(), misses(),
+				hitRate() * 100);
+	}
+}
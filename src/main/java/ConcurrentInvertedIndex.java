@@ -1,228 +1,450 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A thread-safe version of IndvertedIndex using a custom read/write lock.
- * 
+ * A thread-safe version of IndvertedIndex that partitions the words into
+ * stripes by hash, each with its own inverted index and custom read/write lock,
+ * so words in different stripes can be merged at the same time. All stripes
+ * share one document table, protected by its own lock.
+ *
+ * To avoid deadlocks, the document lock is always acquired before any stripe
+ * lock, and at most one stripe lock is held at a time.
+ *
  * @author Charles Sy
  *
  */
-public class ConcurrentInvertedIndex extends InvertedIndex {
-	/** The lock used to protect concurrent access to the underlying inverted index. */
-	private final SimpleReadWriteLock lock;
-	
+public class ConcurrentInvertedIndex implements WritableInvertedIndexInterface {
+	/** The default number of stripes. */
+	public static final int DEFAULT_STRIPES = 16;
+
+	/** The stripes, each holding the words whose hash maps to that stripe. */
+	private final InvertedIndex[] stripes;
+
+	/** The lock used to protect concurrent access to each stripe. */
+	private final SimpleReadWriteLock[] locks;
+
+	/** The lock used to protect concurrent access to the shared document table. */
+	private final SimpleReadWriteLock documentLock;
+
+	/** Incremented after every write. */
+	private final AtomicLong version;
+
+	/** The k-gram index of the words of every stripe, updated by the stripes as words are added. */
+	private final ConcurrentKGramIndex kgrams;
+
 	/**
-	 * Constructor calls super class's constructor and initializes lock
+	 * Constructor initializes the default number of stripes
+	 *
+	 * @see #ConcurrentInvertedIndex(int)
 	 */
 	public ConcurrentInvertedIndex() {
-		super();
-		lock = new SimpleReadWriteLock();
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Constructor initializes the stripes and their locks
+	 *
+	 * @param stripes the number of stripes; should be at least 1
+	 */
+	public ConcurrentInvertedIndex(int stripes) {
+		DocumentTable documents = new DocumentTable();
+		this.kgrams = new ConcurrentKGramIndex();
+		this.stripes = new InvertedIndex[Math.max(1, stripes)];
+		this.locks = new SimpleReadWriteLock[this.stripes.length];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new InvertedIndex(documents, kgrams);
+			this.locks[i] = new SimpleReadWriteLock();
+		}
+		this.documentLock = new SimpleReadWriteLock();
+		this.version = new AtomicLong();
 	}
-	
+
 	@Override
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * Returns the stripe a word belongs to.
+	 *
+	 * @param word the word to lookup
+	 * @return the index of the stripe
+	 */
+	private int stripe(String word) {
+		return Math.floorMod(word.hashCode(), stripes.length);
+	}
+
+	/**
+	 * Adds the word, location, and position to the inverted index
+	 *
+	 * @param word the word to add
+	 * @param location the location the word was found
+	 * @param position the position the word was found
+	 */
 	public void add(String word, String location, Integer position) {
-		lock.writeLock().lock();
+		int i = stripe(word);
+		documentLock.writeLock().lock();
 
 		try {
-			super.add(word, location, position);
+			locks[i].writeLock().lock();
+
+			try {
+				stripes[i].add(word, location, position);
+			}
+			finally {
+				locks[i].writeLock().unlock();
+			}
 		}
 		finally {
-			lock.writeLock().unlock();
+			documentLock.writeLock().unlock();
 		}
+		version.incrementAndGet();
 	}
-	
-	@Override
+
+	/**
+	 * Convenience method to add all words, location, and position to the inverted index
+	 *
+	 * @param words the list of words
+	 * @param path the path of the list
+	 */
 	public void addAll(Collection<String> words, Path path) {
-		lock.writeLock().lock();
+		InvertedIndex local = new InvertedIndex();
+		local.addAll(words, path);
+		local.seal();
+		addAll(local);
+	}
 
-		try {
-			super.addAll(words, path);
-		}
-		finally {
-			lock.writeLock().unlock();
+	/**
+	 * Seals the posting lists of every stripe.
+	 */
+	public void seal() {
+		for (int i = 0; i < stripes.length; i++) {
+			locks[i].writeLock().lock();
+
+			try {
+				stripes[i].seal();
+			}
+			finally {
+				locks[i].writeLock().unlock();
+			}
 		}
 	}
-	
+
+	/**
+	 * Merges the locations of the other index while holding the document lock,
+	 * then splits its words by stripe once and merges each stripe's words while
+	 * holding only that stripe's lock.
+	 *
+	 * @param other the other inverted index
+	 */
 	@Override
 	public void addAll(InvertedIndex other) {
-		lock.writeLock().lock();
+		int[] remap;
+		documentLock.writeLock().lock();
 
 		try {
-			super.addAll(other);;
+			remap = stripes[0].addDocuments(other);
 		}
 		finally {
-			lock.writeLock().unlock();
+			documentLock.writeLock().unlock();
 		}
+
+		InvertedIndex[] words = other.partition(stripes.length, this::stripe);
+		for (int i = 0; i < stripes.length; i++) {
+			if (words[i].size() == 0) {
+				continue;
+			}
+			locks[i].writeLock().lock();
+
+			try {
+				stripes[i].addAll(words[i], remap);
+			}
+			finally {
+				locks[i].writeLock().unlock();
+			}
+		}
+		version.incrementAndGet();
 	}
-	
+
 	@Override
 	public int size() {
-		lock.readLock().lock();
+		int size = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			locks[i].readLock().lock();
 
-		try {
-			return super.size();
-		}
-		finally {
-			lock.readLock().unlock();
-		}
+			try {
+				size += stripes[i].size();
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return size;
 	}
-	
+
 	@Override
 	public int size(String word) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		locks[i].readLock().lock();
 
 		try {
-			return super.size(word);
+			return stripes[i].size(word);
 		}
 		finally {
-			lock.readLock().unlock();
+			locks[i].readLock().unlock();
 		}
 	}
-	
+
 	@Override
 	public int size(String word, String location) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		documentLock.readLock().lock();
 
 		try {
-			return super.size(word, location);
+			locks[i].readLock().lock();
+
+			try {
+				return stripes[i].size(word, location);
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
 	}
-	
+
 	@Override
 	public boolean contains(String word) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		locks[i].readLock().lock();
 
 		try {
-			return super.contains(word);
+			return stripes[i].contains(word);
 		}
 		finally {
-			lock.readLock().unlock();
+			locks[i].readLock().unlock();
 		}
 	}
-	
+
 	@Override
 	public boolean contains(String word, String location) {
-		lock.readLock().lock();
-
-		try {
-			return super.contains(word, location);
-		}
-		finally {
-			lock.readLock().unlock();
-		}
+		return size(word, location) >= 0;
 	}
-	
+
 	@Override
 	public boolean contains(String word, String location, Integer position) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		documentLock.readLock().lock();
 
 		try {
-			return super.contains(word, location, position);
+			locks[i].readLock().lock();
+
+			try {
+				return stripes[i].contains(word, location, position);
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
 	}
-	
+
 	@Override
 	public Collection<String> get() {
-		lock.readLock().lock();
+		TreeSet<String> words = new TreeSet<>();
+		for (int i = 0; i < stripes.length; i++) {
+			locks[i].readLock().lock();
 
-		try {
-			return super.get();
-		}
-		finally {
-			lock.readLock().unlock();
-		}
+			try {
+				words.addAll(stripes[i].get());
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return Collections.unmodifiableSet(words);
 	}
-	
+
 	@Override
 	public Collection<String> get(String word) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		documentLock.readLock().lock();
 
 		try {
-			return super.get(word);
+			locks[i].readLock().lock();
+
+			try {
+				return stripes[i].get(word);
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
 	}
-	
+
 	@Override
 	public Collection<Integer> get(String word, String location) {
-		lock.readLock().lock();
+		int i = stripe(word);
+		documentLock.readLock().lock();
 
 		try {
-			return super.get(word, location);
+			locks[i].readLock().lock();
+
+			try {
+				return stripes[i].get(word, location);
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
 	}
-	
+
 	@Override
-	public String toString() {
-		lock.readLock().lock();
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		documentLock.readLock().lock();
 
 		try {
-			return super.toString();
+			InvertedIndex.SingleSearchResult[] check = new InvertedIndex.SingleSearchResult[stripes[0].documents()];
+			for (String word : queries) {
+				int i = stripe(word);
+				locks[i].readLock().lock();
+
+				try {
+					stripes[i].exactSearch(word, check, list);
+				}
+				finally {
+					locks[i].readLock().unlock();
+				}
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
+		Collections.sort(list);
+		return list;
 	}
-	
+
 	@Override
-	public List<SingleSearchResult> exactSearch(Set<String> line) {
-		lock.readLock().lock();
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		documentLock.readLock().lock();
 
 		try {
-			return super.exactSearch(line);
+			InvertedIndex.SingleSearchResult[] check = new InvertedIndex.SingleSearchResult[stripes[0].documents()];
+			// words sharing a prefix are spread over every stripe
+			for (String query : queries) {
+				for (int i = 0; i < stripes.length; i++) {
+					locks[i].readLock().lock();
+
+					try {
+						stripes[i].partialSearch(query, check, list);
+					}
+					finally {
+						locks[i].readLock().unlock();
+					}
+				}
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
+		Collections.sort(list);
+		return list;
 	}
-	
+
+	/**
+	 * Performs a wildcard search by finding the matching words in the k-gram
+	 * index shared by every stripe, and then searching for those words exactly.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return search(kgrams.wildcard(queries), true, k);
+	}
+
+	/**
+	 * Performs a fuzzy search by finding the similar words in the k-gram index
+	 * shared by every stripe, and then searching for those words exactly.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
 	@Override
-	public List<SingleSearchResult> partialSearch(Set<String> line) {
-		lock.readLock().lock();
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return search(kgrams.fuzzy(queries, distance), true, k);
+	}
+
+	/**
+	 * Freezes each stripe and merges them into a single read-only snapshot, which
+	 * restores the sorted order of words across stripes.
+	 *
+	 * @return the frozen inverted index
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		List<FrozenInvertedIndex> frozen = new ArrayList<>(stripes.length);
+		documentLock.readLock().lock();
 
 		try {
-			return super.partialSearch(line);
+			for (int i = 0; i < stripes.length; i++) {
+				locks[i].readLock().lock();
+
+				try {
+					frozen.add(stripes[i].freeze());
+				}
+				finally {
+					locks[i].readLock().unlock();
+				}
+			}
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
+		return FrozenInvertedIndex.merge(frozen);
 	}
-	
+
 	@Override
 	public void toJsonInvertedIndex(Path path) throws IOException {
-		lock.readLock().lock();
-		
-		try {
-			super.toJsonInvertedIndex(path);
-		}
-		finally {
-			lock.readLock().unlock();
-		}
+		freeze().toJsonInvertedIndex(path);
 	}
-	
+
 	@Override
 	public void toJsonObject(Path path) throws IOException {
-		lock.readLock().lock();
-		
+		documentLock.readLock().lock();
+
 		try {
-			super.toJsonObject(path);
+			stripes[0].toJsonObject(path);
 		}
 		finally {
-			lock.readLock().unlock();
+			documentLock.readLock().unlock();
 		}
 	}
+
+	@Override
+	public String toString() {
+		return freeze().toString();
+	}
 }
@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe character k-gram index over a growing set of words, used by
+ * the indexes that are still being built the same way {@link KGramIndex} is
+ * used by a frozen index. Words are added as they first appear in the inverted
+ * index, so wildcard and fuzzy searches never have to copy or scan the whole
+ * vocabulary. Each k-gram maps to a concurrent set of the words containing it,
+ * and candidates are always verified against the pattern or edit distance.
+ *
+ * Reads are weakly consistent: a search running while words are added may or
+ * may not find the new words.
+ *
+ * @author Charles Sy
+ *
+ */
+public class ConcurrentKGramIndex {
+	/**
+	 * The length of each k-gram
+	 */
+	private final int k;
+
+	/**
+	 * Every word added so far
+	 */
+	private final Set<String> words;
+
+	/**
+	 * Maps each k-gram to the words containing it
+	 */
+	private final ConcurrentHashMap<String, Set<String>> grams;
+
+	/**
+	 * Constructor with the default k-gram length
+	 */
+	public ConcurrentKGramIndex() {
+		this(KGramIndex.DEFAULT_K);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k the length of each k-gram; should be at least 2
+	 */
+	public ConcurrentKGramIndex(int k) {
+		this.k = Math.max(2, k);
+		this.words = ConcurrentHashMap.newKeySet();
+		this.grams = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Adds the word if it has not been added before.
+	 *
+	 * @param word the word to add
+	 */
+	public void add(String word) {
+		if (words.add(word)) {
+			for (String gram : KGramIndex.grams(KGramIndex.BOUNDARY + word + KGramIndex.BOUNDARY, k)) {
+				grams.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(word);
+			}
+		}
+	}
+
+	/**
+	 * Adds every word that has not been added before.
+	 *
+	 * @param words the words to add
+	 */
+	public void addAll(Collection<String> words) {
+		for (String word : words) {
+			add(word);
+		}
+	}
+
+	/**
+	 * Returns the words matching any of the wildcard patterns.
+	 *
+	 * @param patterns the wildcard patterns
+	 * @return the matching words
+	 * @see KGramIndex#wildcard(String)
+	 */
+	public Set<String> wildcard(Set<String> patterns) {
+		Set<String> found = new HashSet<>();
+		for (String pattern : patterns) {
+			found.addAll(wildcard(pattern));
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the words matching a wildcard pattern, where {@code *} matches any
+	 * number of characters and every other character matches itself.
+	 *
+	 * @param pattern the wildcard pattern
+	 * @return the matching words
+	 */
+	public Set<String> wildcard(String pattern) {
+		// every k-gram of the literal pieces between wildcards must appear in a match,
+		// so only the words of the rarest one are verified against the pattern
+		Set<String> smallest = words;
+		String padded = KGramIndex.BOUNDARY + pattern + KGramIndex.BOUNDARY;
+		for (String piece : padded.split("\\" + KGramIndex.WILDCARD)) {
+			for (String gram : KGramIndex.grams(piece, k)) {
+				Set<String> list = grams.get(gram);
+				if (list == null) {
+					return Collections.emptySet();
+				}
+				if (list.size() < smallest.size()) {
+					smallest = list;
+				}
+			}
+		}
+
+		Set<String> found = new HashSet<>();
+		for (String word : smallest) {
+			if (KGramIndex.matches(word, pattern)) {
+				found.add(word);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the words within an edit distance of any of the queries.
+	 *
+	 * @param queries the words to lookup
+	 * @param distance the largest Levenshtein distance allowed
+	 * @return the matching words
+	 * @see KGramIndex#fuzzy(String, int)
+	 */
+	public Set<String> fuzzy(Set<String> queries, int distance) {
+		Set<String> found = new HashSet<>();
+		for (String query : queries) {
+			found.addAll(fuzzy(query, distance));
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the words within an edit distance of the word. A single edit
+	 * changes at most k of the word's k-grams, so a match must share all but
+	 * {@code k * distance} of them, and only words passing that filter are
+	 * compared character by character.
+	 *
+	 * @param word the word to lookup
+	 * @param distance the largest Levenshtein distance allowed
+	 * @return the matching words
+	 */
+	public Set<String> fuzzy(String word, int distance) {
+		Set<String> wanted = KGramIndex.grams(KGramIndex.BOUNDARY + word + KGramIndex.BOUNDARY, k);
+		int threshold = wanted.size() - k * distance;
+
+		Collection<String> candidates;
+		if (threshold <= 0) {
+			// too short to filter by k-grams, so only filter by length
+			candidates = words;
+		}
+		else {
+			candidates = new ArrayList<>();
+			Map<String, Integer> shared = new HashMap<>();
+			for (String gram : wanted) {
+				Set<String> list = grams.get(gram);
+				if (list != null) {
+					for (String term : list) {
+						if (shared.merge(term, 1, Integer::sum) == threshold) {
+							candidates.add(term);
+						}
+					}
+				}
+			}
+		}
+
+		Set<String> found = new HashSet<>();
+		for (String term : candidates) {
+			if (Math.abs(term.length() - word.length()) <= distance
+					&& KGramIndex.distance(term, word, distance) <= distance) {
+				found.add(term);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the number of words added so far.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return words.size();
+	}
+}
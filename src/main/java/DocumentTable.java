@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns each location (file path or URL) a dense integer ID the first time it
+ * is seen, and stores the word count of each location by that ID. The inverted
+ * index stores IDs instead of location strings, and only translates back to
+ * strings when writing output.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Charles Sy
+ *
+ */
+public class DocumentTable {
+	/**
+	 * Maps each location to its ID
+	 */
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * The location of each ID
+	 */
+	private final ArrayList<String> locations;
+
+	/**
+	 * The word count of each ID
+	 */
+	private int[] counts;
+
+	/**
+	 * Constructor initializes an empty table
+	 */
+	public DocumentTable() {
+		this.ids = new HashMap<>();
+		this.locations = new ArrayList<>();
+		this.counts = new int[16];
+	}
+
+	/**
+	 * Returns the ID of the location, assigning the next ID if the location has
+	 * not been seen before.
+	 *
+	 * @param location the location to lookup
+	 * @return the ID of the location
+	 */
+	public int id(String location) {
+		Integer id = ids.get(location);
+		if (id == null) {
+			id = locations.size();
+			ids.put(location, id);
+			locations.add(location);
+			if (id == counts.length) {
+				counts = Arrays.copyOf(counts, counts.length * 2);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the location without assigning one.
+	 *
+	 * @param location the location to lookup
+	 * @return the ID of the location, or -1 if the location is not in the table
+	 */
+	public int find(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the location of the ID.
+	 *
+	 * @param id the ID to lookup
+	 * @return the location of the ID
+	 */
+	public String location(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Returns the word count of the ID.
+	 *
+	 * @param id the ID to lookup
+	 * @return the word count of the location
+	 */
+	public int count(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Updates the word count of the ID if the position is larger than the
+	 * current count.
+	 *
+	 * @param id the ID to update
+	 * @param position the position a word was found at
+	 */
+	public void updateCount(int id, int position) {
+		if (position > counts[id]) {
+			counts[id] = position;
+		}
+	}
+
+	/**
+	 * Adds the offset to the word count of every location that has words.
+	 *
+	 * @param offset the number to add to every word count
+	 */
+	public void shift(int offset) {
+		for (int id = 0; id < locations.size(); id++) {
+			if (counts[id] > 0) {
+				counts[id] += offset;
+			}
+		}
+	}
+
+	/**
+	 * Assigns every location of the other table an ID in this one, and updates
+	 * the word counts.
+	 *
+	 * @param other the other table
+	 * @return the ID in this table of each ID in the other table
+	 */
+	public int[] addAll(DocumentTable other) {
+		int[] remap = new int[other.size()];
+		for (int id = 0; id < remap.length; id++) {
+			remap[id] = id(other.location(id));
+			updateCount(remap[id], other.count(id));
+		}
+		return remap;
+	}
+
+	/**
+	 * Returns the number of locations in the table.
+	 *
+	 * @return the number of locations
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns the word count of every location sorted by location.
+	 *
+	 * @return a sorted map of locations to word counts
+	 */
+	public Map<String, Integer> toMap() {
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			map.put(locations.get(id), counts[id]);
+		}
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+}
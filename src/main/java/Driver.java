@@ -4,6 +4,8 @@ import java.net.URL;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
 
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletHandler;
@@ -30,20 +32,13 @@ public class Driver {
 		Instant start = Instant.now();
 
 		ArgumentMap map = new ArgumentMap(args); //parses command-line arguments
-		InvertedIndex invertedIndex;
-		InvertedIndexBuilder indexBuilder;
 		QueryResultBuilderInterface resultBuilder;
-		WebCrawler crawler;
 		
 		int workerThreads = 0;
 		WorkQueue queue = null;
-		ConcurrentInvertedIndex threadSafe = new ConcurrentInvertedIndex();
-		
-		URL seed = null;
-		int total = 0;
 		
 		//perform multithreading
-		if (map.hasFlag("-html") || map.hasFlag("-threads")) {
+		if (map.hasFlag("-html") || map.hasFlag("-threads") || map.hasFlag("-pipeline")) {
 			try {
 				workerThreads = map.getInteger("-threads", 5);
 				if (workerThreads <= 0) {
@@ -55,79 +50,88 @@ public class Driver {
 			}
 			//initialize workQueue to num of worker threads
 			queue = new WorkQueue(workerThreads);
-			//initialize invertedIndex to use thread safe version
-			invertedIndex = threadSafe;
-			//initialize inverted index builder to use thread safe version and work queue
-			indexBuilder = new MultithreadedInvertedIndexBuilder(threadSafe, queue);
-			//initialize query result builder to use thread safe version and work queue
-			resultBuilder = new MultithreadedQueryResultBuilder(threadSafe, queue);
 		}
-		else {
-			//perform single-threading
-			invertedIndex = new InvertedIndex();
-			indexBuilder = new InvertedIndexBuilder(invertedIndex);
-			resultBuilder = new QueryResultBuilder(invertedIndex);
+		
+		//one cache of search results shared by the query file and the web server
+		QueryCache cache = cache(map);
+		
+		//search the indexes of other -server processes instead of building one
+		if (map.hasFlag("-coordinator")) {
+			coordinate(map, queue);
+			printElapsed(start);
+			return;
 		}
 		
-		if (map.hasFlag("-html")) {
+		//optional flags for how searches are ranked and split across cores, applied to every index searched
+		UnaryOperator<FrozenInvertedIndex> configure = configure(map);
+		
+		FrozenInvertedIndex invertedIndex = null;
+		//optional flag to memory-map a previously saved index instead of building one
+		if (map.hasFlag("-load") && map.hasValue("-load")) {
+			if (map.hasFlag("-text") || map.hasFlag("-html")) {
+				System.out.println("Warning: The -text and -html flags are ignored when loading an index with -load.");
+			}
 			try {
-				seed = new URL(map.getString("-html"));
-				//optional flag
-				if (map.hasFlag("-max")) {
-					total = map.getInteger("-max", 1);
-				}
-				crawler = new WebCrawler(queue, threadSafe);
-				try {
-					crawler.build(seed, total);
-				} catch (IOException e) {
-					System.out.println("Error: Unable to crawl the web.");
+				invertedIndex = configure.apply(FrozenInvertedIndex.load(map.getPath("-load")));
+			} catch (IOException e) {
+				//do not fall back to a full build, since the user asked for the saved index
+				System.out.println("Error: Unable to load the inverted index from file: " + map.getPath("-load").toString());
+				if (queue != null) {
+					queue.shutdown();
 				}
-			} catch (MalformedURLException e) {
-				System.out.println("Warning: A malformed URL has occured.");
-			} catch (NumberFormatException e) {
-				System.out.println("Warning: Invalid input for total number of URLs to crawl.");
-				total = 1;
+				printElapsed(start);
+				return;
 			}
 		}
-		
-		int port;
-		//indicates a search engine web server should be launched 
-		if (map.hasFlag("-server")) {
-			try {
-				port = map.getInteger("-server", 8080);
-			} catch (NumberFormatException e) {
-				System.out.println("Warning: Invalid Port Number.");
-				port = 8080;
+		Server server = null;
+		if (invertedIndex == null) {
+			SnapshotInvertedIndex live = null;
+			//when crawling with a server, search snapshots that are published while crawling
+			if (map.hasFlag("-server") && map.hasFlag("-html")) {
+				int documents = SnapshotInvertedIndex.DEFAULT_DOCUMENTS;
+				int millis = (int) SnapshotInvertedIndex.DEFAULT_MILLIS;
+				try {
+					documents = map.getInteger("-snapshot-docs", documents);
+				} catch (NumberFormatException e) {
+					System.out.println("Warning: Invalid input for the number of documents per snapshot.");
+				}
+				try {
+					millis = map.getInteger("-snapshot-ms", millis);
+				} catch (NumberFormatException e) {
+					System.out.println("Warning: Invalid input for the milliseconds between snapshots.");
+				}
+				live = new SnapshotInvertedIndex(documents, millis, configure);
+				server = startServer(map, live, cache);
 			}
-			Server server = new Server(port);
-			try {
-				SearchServlet searchServlet = new SearchServlet(invertedIndex);
-				ServletHolder servletHolder = new ServletHolder(searchServlet);
-
-				ServletHandler servletHandler = new ServletHandler();
-				servletHandler.addServletWithMapping(servletHolder, "/search");
-
-
-				server.setHandler(servletHandler);
-				server.start();
-				System.out.println("Server started " + invertedIndex.size());
-				server.join();
-
-			} catch (Exception e) {
-				System.out.println("Jetty server failed because " + e.getMessage());
+			//building is done, so search and output a compact read-only snapshot of the index
+			invertedIndex = build(map, queue, live);
+			//the snapshot of the live index is already configured like its segments
+			if (live == null) {
+				invertedIndex = configure.apply(invertedIndex);
 			}
 		}
 		
-		//check whether "-text path" flag, value pair exists
-		if (map.hasFlag("-text") && map.hasValue("-text")) {
+		//optional flag to save the index in a binary format that can be loaded with -load
+		if (map.hasFlag("-save")) {
 			try {
-				indexBuilder.add(map.getPath("-text"));
+				invertedIndex.save(map.getPath("-save", Path.of("index.bin")));
 			} catch (IOException e) {
-				System.out.println("Error: Unable to add data to the inverted index.");
+				System.out.println("Error: Unable to save the inverted index to file.");
 			}
 		}
-		else if (map.hasFlag("-text") && !map.hasValue("-text")) {
-			System.out.println("Warning: No value given to -text flag");
+		
+		if (map.hasFlag("-stream")) {
+			//write each query's results as soon as they are found, sorted unless "-stream ndjson" is given
+			resultBuilder = new StreamingQueryResultBuilder(invertedIndex, queue, limit(map), cache,
+					map.getString("-stream", "sorted").equals("ndjson"));
+		}
+		else if (queue != null) {
+			//initialize query result builder to use work queue
+			resultBuilder = new MultithreadedQueryResultBuilder(invertedIndex, queue, limit(map), cache);
+		}
+		else {
+			//perform single-threading
+			resultBuilder = new QueryResultBuilder(invertedIndex, limit(map), cache);
 		}
 		
 		//check for optional flag
@@ -178,9 +182,328 @@ public class Driver {
 			queue.shutdown(); 
 		}
 		
-		// calculate time elapsed and output
+		//indicates a search engine web server should be launched 
+		if (map.hasFlag("-server")) {
+			if (server == null) {
+				server = startServer(map, invertedIndex, cache);
+			}
+			if (server != null) {
+				try {
+					server.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+		printElapsed(start);
+	}
+	
+	/**
+	 * Calculates the time elapsed since the start and outputs it.
+	 * 
+	 * @param start when the program started
+	 */
+	private static void printElapsed(Instant start) {
 		Duration elapsed = Duration.between(start, Instant.now());
 		double seconds = (double) elapsed.toMillis() / Duration.ofSeconds(1).toMillis();
 		System.out.printf("Elapsed: %f seconds%n", seconds);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Searches the query file and serves searches by sending them to the nodes
+	 * given by the -coordinator flag, each a -server process on its own part of
+	 * the corpus. The nodes may be building or changing their indexes, so the
+	 * results are not cached.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @param queue the work queue, or {@code null} to search one query at a time
+	 */
+	private static void coordinate(ArgumentMap map, WorkQueue queue) {
+		int timeout = (int) SearchCoordinator.DEFAULT_TIMEOUT;
+		try {
+			timeout = map.getInteger("-shard-timeout", timeout);
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid input for the node timeout in milliseconds.");
+		}
+		
+		SearchCoordinator coordinator;
+		try {
+			coordinator = new SearchCoordinator(Arrays.asList(map.getString("-coordinator", "").split(",")), timeout);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Error: Invalid list of nodes for the coordinator: " + e.getMessage());
+			return;
+		}
+		
+		QueryResultBuilderInterface resultBuilder;
+		if (queue != null) {
+			resultBuilder = new MultithreadedQueryResultBuilder(coordinator, queue, limit(map));
+		}
+		else {
+			resultBuilder = new QueryResultBuilder(coordinator, limit(map));
+		}
+		
+		if (map.hasFlag("-query") && map.hasValue("-query")) {
+			try {
+				resultBuilder.parseQuery(map.getPath("-query"), map.hasFlag("-exact"));
+			} catch (IOException e) {
+				System.out.println("Error: No search performed.");
+			}
+		}
+		
+		if (map.hasFlag("-results")) {
+			try {
+				resultBuilder.toJsonNestedResult(map.getPath("-results", Path.of("results.json")));
+			} catch (IOException e) {
+				System.out.println("Warning: No output file produced of search results but still performed the search operation..");
+			}
+		}
+		
+		if (queue != null) {
+			queue.shutdown();
+		}
+		
+		if (coordinator.failures() > 0) {
+			System.out.println("Warning: " + coordinator.failures() + " node requests failed, so some results are partial.");
+		}
+		
+		if (map.hasFlag("-server")) {
+			Server server = startServer(map, coordinator, new QueryCache(0, 0));
+			if (server != null) {
+				try {
+					server.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of results kept per query from the optional
+	 * -limit flag.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @return the maximum number of results, or 0 for all of them
+	 */
+	private static int limit(ArgumentMap map) {
+		try {
+			return Math.max(0, map.getInteger("-limit", 0));
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid input for the number of results per query.");
+			return 0;
+		}
+	}
+	
+	/**
+	 * Creates the staged index builder from the optional value of the -pipeline
+	 * flag, which gives the number of threads reading, tokenizing, stemming,
+	 * and indexing separated by commas, such as 1,2,2,1. The optional
+	 * -pipeline-capacity flag gives the number of batches each queue holds.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @param invertedIndex the thread safe inverted index
+	 * @return the staged index builder
+	 */
+	private static PipelinedInvertedIndexBuilder pipeline(ArgumentMap map, WritableInvertedIndexInterface invertedIndex) {
+		int[] threads = { 1, 1, 1, 1 };
+		int capacity = PipelinedInvertedIndexBuilder.DEFAULT_CAPACITY;
+		try {
+			String[] values = map.getString("-pipeline", "1,1,1,1").split(",");
+			for (int i = 0; i < threads.length && i < values.length; i++) {
+				threads[i] = Integer.parseInt(values[i].strip());
+			}
+			capacity = map.getInteger("-pipeline-capacity", capacity);
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid input for the pipeline threads or capacity.");
+		}
+		return new PipelinedInvertedIndexBuilder(invertedIndex, threads[0], threads[1], threads[2], threads[3],
+				capacity);
+	}
+	
+	/**
+	 * Creates the configuration applied to every frozen index that is searched,
+	 * both the final index and the segments searched by the server while
+	 * crawling, so the same flags always give the same rankings. The optional
+	 * -scorer flag ranks search results with BM25 instead of the percent of
+	 * matching words, and the optional -parallel-postings flag gives the fewest
+	 * postings a single search reads before it is split across cores.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @return the configuration of a frozen index
+	 */
+	private static UnaryOperator<FrozenInvertedIndex> configure(ArgumentMap map) {
+		boolean bm25 = map.getString("-scorer", "matches").equals("bm25");
+		int parallelPostings = FrozenInvertedIndex.DEFAULT_PARALLEL_POSTINGS;
+		try {
+			parallelPostings = map.getInteger("-parallel-postings", parallelPostings);
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid input for the number of postings searched in parallel.");
+		}
+		int postings = parallelPostings;
+		return index -> {
+			FrozenInvertedIndex configured = bm25 ? index.withScorer(Bm25Scorer::new) : index;
+			return postings == FrozenInvertedIndex.DEFAULT_PARALLEL_POSTINGS ? configured
+					: configured.withParallelPostings(postings);
+		};
+	}
+	
+	/**
+	 * Creates the cache of search results from the optional -cache flag, which
+	 * gives the maximum number of cached queries, or 0 to disable the cache.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @return the cache of search results
+	 */
+	private static QueryCache cache(ArgumentMap map) {
+		try {
+			return new QueryCache(map.getInteger("-cache", QueryCache.DEFAULT_ENTRIES), QueryCache.DEFAULT_BYTES);
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid input for the number of cached queries.");
+			return new QueryCache();
+		}
+	}
+	
+	/**
+	 * Starts a search engine web server on the port given by the -server flag.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @param invertedIndex the inverted index to search
+	 * @param cache the cache of search results
+	 * @return the started server, or {@code null} if it failed to start
+	 */
+	private static Server startServer(ArgumentMap map, SearchableIndexInterface invertedIndex, QueryCache cache) {
+		int port;
+		try {
+			port = map.getInteger("-server", 8080);
+		} catch (NumberFormatException e) {
+			System.out.println("Warning: Invalid Port Number.");
+			port = 8080;
+		}
+		Server server = new Server(port);
+		try {
+			SearchServlet searchServlet = new SearchServlet(invertedIndex, limit(map), cache);
+			ServletHolder servletHolder = new ServletHolder(searchServlet);
+
+			ServletHandler servletHandler = new ServletHandler();
+			servletHandler.addServletWithMapping(servletHolder, "/search");
+			//answers the searches of a coordinator
+			servletHandler.addServletWithMapping(new ServletHolder(new ShardServlet(invertedIndex, cache)), "/shard");
+
+
+			server.setHandler(servletHandler);
+			server.start();
+			System.out.println("Server started on port " + port);
+			return server;
+
+		} catch (Exception e) {
+			System.out.println("Jetty server failed because " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Builds the inverted index from the -html and -text flags, then freezes it.
+	 * The mutable index is only reachable from this method, so it can be garbage
+	 * collected as soon as the frozen snapshot is returned.
+	 * 
+	 * @param map the parsed command-line arguments
+	 * @param queue the work queue, or {@code null} if single-threaded
+	 * @param live the index already being searched by the server, or {@code null} to choose one
+	 * @return the frozen inverted index
+	 */
+	private static FrozenInvertedIndex build(ArgumentMap map, WorkQueue queue, SnapshotInvertedIndex live) {
+		WritableInvertedIndexInterface invertedIndex;
+		InvertedIndexBuilder indexBuilder;
+		SegmentedInvertedIndex segmented = null;
+		
+		URL seed = null;
+		int total = 0;
+		
+		if (queue != null) {
+			//initialize invertedIndex to use the thread safe version chosen by the optional -index-type flag
+			if (live != null) {
+				invertedIndex = live;
+			}
+			else if (map.getString("-index-type", "concurrent").equals("segmented")) {
+				segmented = new SegmentedInvertedIndex();
+				invertedIndex = segmented;
+			}
+			else if (map.getString("-index-type", "concurrent").equals("lockfree")) {
+				invertedIndex = new LockFreeInvertedIndex();
+			}
+			else if (map.getString("-index-type", "concurrent").equals("sharded")) {
+				try {
+					invertedIndex = new ShardedInvertedIndex(map.getInteger("-shards", Runtime.getRuntime().availableProcessors()));
+				} catch (NumberFormatException e) {
+					System.out.println("Warning: Invalid input for the number of shards.");
+					invertedIndex = new ShardedInvertedIndex();
+				}
+			}
+			else {
+				invertedIndex = new ConcurrentInvertedIndex();
+			}
+			//initialize inverted index builder to use thread safe version and work queue, where the optional
+			//-chunk-size flag sets the size in bytes above which a single file is split across workers
+			int chunkSize = MultithreadedInvertedIndexBuilder.DEFAULT_CHUNK_SIZE;
+			try {
+				chunkSize = map.getInteger("-chunk-size", chunkSize);
+			} catch (NumberFormatException e) {
+				System.out.println("Warning: Invalid input for the chunk size.");
+			}
+			indexBuilder = map.hasFlag("-pipeline") ? pipeline(map, invertedIndex)
+					: new MultithreadedInvertedIndexBuilder(invertedIndex, queue, chunkSize);
+		}
+		else {
+			invertedIndex = new InvertedIndex();
+			indexBuilder = new InvertedIndexBuilder(invertedIndex);
+		}
+		
+		if (map.hasFlag("-html")) {
+			try {
+				seed = new URL(map.getString("-html"));
+				//optional flag
+				if (map.hasFlag("-max")) {
+					total = map.getInteger("-max", 1);
+				}
+				WebCrawler crawler = new WebCrawler(queue, invertedIndex);
+				try {
+					crawler.build(seed, total);
+				} catch (IOException e) {
+					System.out.println("Error: Unable to crawl the web.");
+				}
+			} catch (MalformedURLException e) {
+				System.out.println("Warning: A malformed URL has occured.");
+			} catch (NumberFormatException e) {
+				System.out.println("Warning: Invalid input for total number of URLs to crawl.");
+				total = 1;
+			}
+		}
+		
+		//check whether "-text path" flag, value pair exists
+		if (map.hasFlag("-text") && map.hasValue("-text")) {
+			try {
+				indexBuilder.add(map.getPath("-text"));
+			} catch (IOException e) {
+				System.out.println("Error: Unable to add data to the inverted index.");
+			}
+		}
+		else if (map.hasFlag("-text") && !map.hasValue("-text")) {
+			System.out.println("Warning: No value given to -text flag");
+		}
+		
+		//optional flag to print the metrics of every pipeline stage, which are otherwise only logged
+		if (indexBuilder instanceof PipelinedInvertedIndexBuilder && map.hasFlag("-pipeline-stats")) {
+			System.out.println(indexBuilder);
+		}
+		
+		FrozenInvertedIndex frozen = invertedIndex.freeze();
+		if (segmented != null) {
+			segmented.shutdown();
+		}
+		if (live != null) {
+			live.shutdown();
+		}
+		return frozen;
+	}
+}
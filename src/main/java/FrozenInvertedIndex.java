@@ -0,0 +1,1524 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A read-only inverted index compacted into flat arrays once building is done.
+ * The words are kept in a sorted array, and an offset table maps each word to
+ * its range of document IDs, which in turn map to their range of positions.
+ * Document IDs are assigned in sorted order of location, so the postings of
+ * every word are already in the order they are written as JSON.
+ *
+ * The integer arrays are held in {@link IntBuffer}s, so the same index can be
+ * searched whether it was frozen in memory or memory-mapped from a file written
+ * by {@link #save(Path)}. A mapped index reads its postings straight from the
+ * page cache, and only keeps its words and locations on the heap.
+ *
+ * Since nothing is modified after construction, this class is thread-safe
+ * without any locking.
+ *
+ * @author Charles Sy
+ *
+ */
+public class FrozenInvertedIndex implements InvertedIndexInterface {
+	/**
+	 * The first bytes of a saved index file
+	 */
+	private static final int MAGIC = 0x53454958;
+
+	/**
+	 * The version of the saved index file format
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The number of bytes in the header of a saved index file
+	 */
+	private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+	/**
+	 * The most integers a single memory-mapped region can hold
+	 */
+	private static final int MAX_MAPPED_INTS = Integer.MAX_VALUE / Integer.BYTES;
+
+	/**
+	 * The bits of a score upper bound that has not been computed yet
+	 */
+	private static final long UNKNOWN_BOUND = Double.doubleToRawLongBits(Double.NaN);
+
+	/**
+	 * The most words a ranked search evaluates with MaxScore pruning; longer
+	 * queries, like partial searches of short prefixes, count matches instead
+	 */
+	private static final int MAX_PRUNED_TERMS = 64;
+
+	/**
+	 * The longest prefix whose postings are merged across all of its words
+	 */
+	private static final int MAX_MERGED_PREFIX = 3;
+
+	/**
+	 * The fewest words a prefix must have for its postings to be merged
+	 */
+	private static final int MIN_MERGED_TERMS = 256;
+
+	/**
+	 * The default fewest postings a search must read before its documents are
+	 * split across the common fork/join pool
+	 */
+	public static final int DEFAULT_PARALLEL_POSTINGS = 1 << 16;
+
+	/**
+	 * The fewest documents a parallel search gives to a single task
+	 */
+	private static final int MIN_PARALLEL_DOCUMENTS = 1024;
+
+	/**
+	 * The sorted words
+	 */
+	private final String[] terms;
+
+	/**
+	 * The start of each word's range in {@link #documents}, with one extra offset at the end
+	 */
+	private final IntBuffer termOffsets;
+
+	/**
+	 * The document IDs of every word, sorted within each word's range
+	 */
+	private final IntBuffer documents;
+
+	/**
+	 * The start of each posting's range in {@link #positions}, with one extra offset at the end
+	 */
+	private final IntBuffer positionOffsets;
+
+	/**
+	 * The positions of every posting, sorted within each posting's range
+	 */
+	private final IntBuffer positions;
+
+	/**
+	 * The sorted locations, where the index is the document ID
+	 */
+	private final String[] locations;
+
+	/**
+	 * The word count of each document ID
+	 */
+	private final IntBuffer counts;
+
+	/**
+	 * The raw bits of the highest score any document gets from each word alone,
+	 * computed the first time the word is searched and {@code NaN} until then.
+	 * The bits are stored atomically, since a plain {@code double} written by one
+	 * search may be read half-written by another.
+	 */
+	private final AtomicLongArray bounds;
+
+	/**
+	 * Scores each word found in a document
+	 */
+	private final ScorerInterface scorer;
+
+	/**
+	 * The postings merged across all the words of common short prefixes,
+	 * created the first time each prefix is searched
+	 */
+	private final ConcurrentHashMap<String, MergedPostings> merged;
+
+	/**
+	 * The k-gram index of the words, created the first time a wildcard or fuzzy
+	 * search is performed
+	 */
+	private volatile KGramIndex kgrams;
+
+	/**
+	 * The fewest postings a search must read before it runs in parallel
+	 */
+	private final int parallelPostings;
+
+	/**
+	 * Constructor
+	 *
+	 * @param terms the sorted words
+	 * @param termOffsets the start of each word's range of documents
+	 * @param documents the document IDs of every word
+	 * @param positionOffsets the start of each posting's range of positions
+	 * @param positions the positions of every posting
+	 * @param locations the sorted locations
+	 * @param counts the word count of each location
+	 */
+	public FrozenInvertedIndex(String[] terms, int[] termOffsets, int[] documents,
+			int[] positionOffsets, int[] positions, String[] locations, int[] counts) {
+		this(terms, IntBuffer.wrap(termOffsets), IntBuffer.wrap(documents), IntBuffer.wrap(positionOffsets),
+				IntBuffer.wrap(positions), locations, IntBuffer.wrap(counts), MatchScorer::new,
+				DEFAULT_PARALLEL_POSTINGS);
+	}
+	
+	/**
+	 * Constructor
+	 *
+	 * @param terms the sorted words
+	 * @param termOffsets the start of each word's range of documents
+	 * @param documents the document IDs of every word
+	 * @param positionOffsets the start of each posting's range of positions
+	 * @param positions the positions of every posting
+	 * @param locations the sorted locations
+	 * @param counts the word count of each location
+	 * @param scorer creates the scorer of this index
+	 * @param parallelPostings the fewest postings a search must read before it
+	 *        runs in parallel
+	 */
+	private FrozenInvertedIndex(String[] terms, IntBuffer termOffsets, IntBuffer documents,
+			IntBuffer positionOffsets, IntBuffer positions, String[] locations, IntBuffer counts,
+			Function<FrozenInvertedIndex, ScorerInterface> scorer, int parallelPostings) {
+		this.terms = terms;
+		this.termOffsets = termOffsets;
+		this.documents = documents;
+		this.positionOffsets = positionOffsets;
+		this.positions = positions;
+		this.locations = locations;
+		this.counts = counts;
+		this.bounds = new AtomicLongArray(terms.length);
+		// plain writes are enough here, since the final field publishes them with the index
+		for (int term = 0; term < terms.length; term++) {
+			this.bounds.setPlain(term, UNKNOWN_BOUND);
+		}
+		this.scorer = scorer.apply(this);
+		this.merged = new ConcurrentHashMap<>();
+		this.parallelPostings = Math.max(1, parallelPostings);
+	}
+
+	/**
+	 * Returns a view of this index that ranks search results with another
+	 * scorer. The view shares every array with this index, so only the scorer's
+	 * own statistics are computed.
+	 *
+	 * @param scorer creates the scorer from the index it will score
+	 * @return the index ranked by the scorer
+	 */
+	public FrozenInvertedIndex withScorer(Function<FrozenInvertedIndex, ScorerInterface> scorer) {
+		return new FrozenInvertedIndex(terms, termOffsets, documents, positionOffsets, positions, locations, counts,
+				scorer, parallelPostings);
+	}
+
+	/**
+	 * Returns a view of this index that splits searches reading at least the
+	 * given number of postings across the common fork/join pool. The view
+	 * shares every array and the scorer with this index.
+	 *
+	 * @param parallelPostings the fewest postings a search must read before it
+	 *        runs in parallel
+	 * @return the index with the new threshold
+	 */
+	public FrozenInvertedIndex withParallelPostings(int parallelPostings) {
+		return new FrozenInvertedIndex(terms, termOffsets, documents, positionOffsets, positions, locations, counts,
+				index -> scorer, parallelPostings);
+	}
+
+	/**
+	 * Returns the number of locations, which is also one more than the largest
+	 * document ID.
+	 *
+	 * @return the number of locations
+	 */
+	public int documents() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns the word count of a document.
+	 *
+	 * @param document the document ID
+	 * @return the word count of the location
+	 */
+	public int count(int document) {
+		return counts.get(document);
+	}
+
+	/**
+	 * Returns the number of documents a word was found in.
+	 *
+	 * @param term the index of the word in sorted order
+	 * @return the number of documents
+	 */
+	public int frequency(int term) {
+		return termOffsets.get(term + 1) - termOffsets.get(term);
+	}
+
+	@Override
+	public int size() {
+		return terms.length;
+	}
+
+	@Override
+	public int size(String word) {
+		int term = Arrays.binarySearch(terms, word);
+		if (term >= 0) {
+			return termOffsets.get(term + 1) - termOffsets.get(term);
+		}
+		return -1;
+	}
+
+	@Override
+	public int size(String word, String location) {
+		int posting = posting(word, location);
+		if (posting >= 0) {
+			return positionOffsets.get(posting + 1) - positionOffsets.get(posting);
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return Arrays.binarySearch(terms, word) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return posting(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		int posting = posting(word, location);
+		return posting >= 0 && binarySearch(positions, positionOffsets.get(posting),
+				positionOffsets.get(posting + 1), position) >= 0;
+	}
+
+	/**
+	 * Finds the posting of the word and location.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location to lookup
+	 * @return the index of the posting in {@link #documents}, or -1 if the word
+	 *         was not found in the location
+	 */
+	private int posting(String word, String location) {
+		int term = Arrays.binarySearch(terms, word);
+		int document = Arrays.binarySearch(locations, location);
+		if (term < 0 || document < 0) {
+			return -1;
+		}
+		int posting = binarySearch(documents, termOffsets.get(term), termOffsets.get(term + 1), document);
+		return posting < 0 ? -1 : posting;
+	}
+	
+	/**
+	 * Searches a sorted range of the buffer for the key.
+	 *
+	 * @param buffer the buffer to search
+	 * @param from the first index of the range
+	 * @param to the index after the range
+	 * @param key the value to search for
+	 * @return the index of the key, or a negative value if it was not found
+	 * @see Arrays#binarySearch(int[], int, int, int)
+	 */
+	private static int binarySearch(IntBuffer buffer, int from, int to, int key) {
+		int low = from;
+		int high = to - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = buffer.get(middle);
+			if (value < key) {
+				low = middle + 1;
+			}
+			else if (value > key) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	public Collection<String> get() {
+		return Collections.unmodifiableList(Arrays.asList(terms));
+	}
+
+	@Override
+	public Collection<String> get(String word) {
+		int term = Arrays.binarySearch(terms, word);
+		if (term >= 0) {
+			return Collections.unmodifiableList(locations(term));
+		}
+		return Collections.emptySet();
+	}
+
+	@Override
+	public Collection<Integer> get(String word, String location) {
+		int posting = posting(word, location);
+		if (posting >= 0) {
+			return new Slice(positionOffsets.get(posting), positionOffsets.get(posting + 1));
+		}
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Returns the locations of a word.
+	 *
+	 * @param term the index of the word
+	 * @return the sorted locations
+	 */
+	private List<String> locations(int term) {
+		List<String> found = new ArrayList<>(termOffsets.get(term + 1) - termOffsets.get(term));
+		for (int i = termOffsets.get(term); i < termOffsets.get(term + 1); i++) {
+			found.add(locations[documents.get(i)]);
+		}
+		return found;
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		return search(queries, true, 0);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, 0);
+	}
+
+	/**
+	 * Finds the best k results, scored by this index's scorer. Short queries are
+	 * evaluated one document at a time with MaxScore pruning, and long queries or
+	 * searches for every result add up the matches and score of every document
+	 * in primitive arrays. Searches reading enough postings do either one over
+	 * ranges of documents in parallel. Either way, search results are only
+	 * created for documents that make it into the returned list.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		int[] matching = new int[Math.max(1, queries.size())];
+		int count = 0;
+		List<MergedPostings> prefixes = new ArrayList<>();
+		for (String query : queries) {
+			if (exact) {
+				int term = Arrays.binarySearch(terms, query);
+				if (term >= 0) {
+					matching[count++] = term;
+				}
+				continue;
+			}
+			int start = prefixStart(query);
+			int end = prefixEnd(query, start);
+			if (end - start >= MIN_MERGED_TERMS && query.length() <= MAX_MERGED_PREFIX && scorer.countsOnly()) {
+				prefixes.add(merged.computeIfAbsent(query, prefix -> new MergedPostings(start, end)));
+				continue;
+			}
+			if (count + end - start > matching.length) {
+				matching = Arrays.copyOf(matching, Math.max(count + end - start, matching.length * 2));
+			}
+			for (int term = start; term < end; term++) {
+				matching[count++] = term;
+			}
+		}
+		return rank(Arrays.copyOf(matching, count), prefixes, k);
+	}
+
+	/**
+	 * Performs a wildcard search, where {@code *} in a query matches any number
+	 * of characters.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		KGramIndex index = kgrams();
+		List<int[]> found = new ArrayList<>();
+		for (String query : queries) {
+			found.add(index.wildcard(query));
+		}
+		return rank(concat(found), Collections.emptyList(), k);
+	}
+
+	/**
+	 * Performs a fuzzy search, matching every word within an edit distance of
+	 * each query.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		KGramIndex index = kgrams();
+		List<int[]> found = new ArrayList<>();
+		for (String query : queries) {
+			found.add(index.fuzzy(query, distance));
+		}
+		return rank(concat(found), Collections.emptyList(), k);
+	}
+
+	/**
+	 * Returns the k-gram index of the words, creating it the first time.
+	 *
+	 * @return the k-gram index
+	 */
+	private KGramIndex kgrams() {
+		KGramIndex index = kgrams;
+		if (index == null) {
+			synchronized (this) {
+				index = kgrams;
+				if (index == null) {
+					index = new KGramIndex(terms);
+					kgrams = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Joins the arrays of matching words into one, keeping each word once even
+	 * if several queries match it.
+	 *
+	 * @param found the matching words of each query
+	 * @return every matching word in sorted order
+	 */
+	private static int[] concat(List<int[]> found) {
+		int[] matching = new int[found.stream().mapToInt(array -> array.length).sum()];
+		int count = 0;
+		for (int[] array : found) {
+			System.arraycopy(array, 0, matching, count, array.length);
+			count += array.length;
+		}
+		Arrays.sort(matching);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || matching[i] != matching[distinct - 1]) {
+				matching[distinct++] = matching[i];
+			}
+		}
+		return Arrays.copyOf(matching, distinct);
+	}
+
+	/**
+	 * Ranks the documents of the matching words and prefixes.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param prefixes the merged postings of matching prefixes
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	private List<InvertedIndex.SingleSearchResult> rank(int[] matching, List<MergedPostings> prefixes, int k) {
+		// scores are always added up in this order, so pruning never changes them
+		Arrays.sort(matching);
+
+		if (k <= 0) {
+			List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+			accumulate(matching, prefixes, k, list::add);
+			Collections.sort(list);
+			return list;
+		}
+		PriorityQueue<InvertedIndex.SingleSearchResult> heap = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+		Consumer<InvertedIndex.SingleSearchResult> keep = result -> {
+			heap.add(result);
+			if (heap.size() > k) {
+				heap.poll();
+			}
+		};
+		if (!pruned(matching, prefixes, k)) {
+			accumulate(matching, prefixes, k, keep);
+		}
+		else if (parallel(matching, prefixes)) {
+			// each range prunes against its own heap, and the best of every range are kept
+			search(matching, prefixes, k).forEach(keep);
+		}
+		else {
+			maxScore(matching, k, 0, locations.length, heap);
+		}
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>(heap);
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Adds up the matches and score of every document containing any of the
+	 * words, then creates a search result for each of those documents. Searches
+	 * reading enough postings split the documents into ranges that are added up
+	 * in parallel, and only the best k results of each range are passed on.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param prefixes the merged postings of prefixes, only used when the scorer
+	 *        only needs the total matches
+	 * @param k the maximum number of results needed, or 0 for all of them
+	 * @param results receives the search result of each document
+	 */
+	private void accumulate(int[] matching, List<MergedPostings> prefixes, int k,
+			Consumer<InvertedIndex.SingleSearchResult> results) {
+		if (parallel(matching, prefixes)) {
+			search(matching, prefixes, k).forEach(results);
+			return;
+		}
+		int[] matches = new int[locations.length];
+		double[] sums = new double[locations.length];
+		int[] found = new int[16];
+		int size = 0;
+		for (MergedPostings prefix : prefixes) {
+			for (int i = 0; i < prefix.documents.length; i++) {
+				int document = prefix.documents[i];
+				if (matches[document] == 0) {
+					if (size == found.length) {
+						found = Arrays.copyOf(found, size * 2);
+					}
+					found[size++] = document;
+				}
+				matches[document] += prefix.frequencies[i];
+			}
+		}
+		for (int term : matching) {
+			for (int i = termOffsets.get(term); i < termOffsets.get(term + 1); i++) {
+				int document = documents.get(i);
+				if (matches[document] == 0) {
+					if (size == found.length) {
+						found = Arrays.copyOf(found, size * 2);
+					}
+					found[size++] = document;
+				}
+				int frequency = positionOffsets.get(i + 1) - positionOffsets.get(i);
+				matches[document] += frequency;
+				sums[document] += scorer.score(term, document, frequency);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			int document = found[i];
+			results.accept(result(document, matches[document], scorer.total(document, matches[document], sums[document])));
+		}
+	}
+
+	/**
+	 * Determines whether a search is evaluated one document at a time with
+	 * MaxScore pruning, which needs a limit on the results, few enough words
+	 * to order by bound, and no merged prefixes.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param prefixes the merged postings of prefixes
+	 * @param k the maximum number of results, or 0 for all of them
+	 * @return {@code true} if the search is pruned
+	 */
+	private static boolean pruned(int[] matching, List<MergedPostings> prefixes, int k) {
+		return k > 0 && matching.length <= MAX_PRUNED_TERMS && prefixes.isEmpty();
+	}
+
+	/**
+	 * Determines whether a search reads enough postings to be split across the
+	 * common fork/join pool.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param prefixes the merged postings of prefixes
+	 * @return {@code true} if the search runs in parallel
+	 */
+	private boolean parallel(int[] matching, List<MergedPostings> prefixes) {
+		return ForkJoinPool.getCommonPoolParallelism() > 1 && postings(matching, prefixes) >= parallelPostings;
+	}
+
+	/**
+	 * Splits the documents into ranges that are searched in parallel.
+	 *
+	 * @param matching the sorted indexes of the matching words
+	 * @param prefixes the merged postings of prefixes
+	 * @param k the maximum number of results of each range, or 0 for all of them
+	 * @return the best k search results of every range, in no particular order
+	 */
+	private List<InvertedIndex.SingleSearchResult> search(int[] matching, List<MergedPostings> prefixes, int k) {
+		int grain = Math.max(MIN_PARALLEL_DOCUMENTS, locations.length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+		return ForkJoinPool.commonPool().invoke(new RangeSearch(matching, prefixes, k, 0, locations.length, grain));
+	}
+
+	/**
+	 * Returns the number of postings a search reads.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param prefixes the merged postings of prefixes
+	 * @return the number of postings
+	 */
+	private long postings(int[] matching, List<MergedPostings> prefixes) {
+		long total = 0;
+		for (MergedPostings prefix : prefixes) {
+			total += prefix.documents.length;
+		}
+		for (int term : matching) {
+			total += termOffsets.get(term + 1) - termOffsets.get(term);
+		}
+		return total;
+	}
+
+	/**
+	 * Adds up the matches and score of the documents in a range of IDs. Each
+	 * document still adds up its words in the same order as a search of every
+	 * document, so the scores are exactly the same.
+	 *
+	 * @param matching the sorted indexes of the matching words
+	 * @param prefixes the merged postings of prefixes
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @param from the first document ID of the range
+	 * @param to one past the last document ID of the range
+	 * @return the best k search results of the range, in no particular order
+	 */
+	private List<InvertedIndex.SingleSearchResult> accumulate(int[] matching, List<MergedPostings> prefixes, int k,
+			int from, int to) {
+		int[] matches = new int[to - from];
+		double[] sums = new double[to - from];
+		for (MergedPostings prefix : prefixes) {
+			int i = Arrays.binarySearch(prefix.documents, from);
+			for (i = i < 0 ? -(i + 1) : i; i < prefix.documents.length && prefix.documents[i] < to; i++) {
+				matches[prefix.documents[i] - from] += prefix.frequencies[i];
+			}
+		}
+		for (int term : matching) {
+			int end = termOffsets.get(term + 1);
+			int i = binarySearch(documents, termOffsets.get(term), end, from);
+			for (i = i < 0 ? -(i + 1) : i; i < end && documents.get(i) < to; i++) {
+				int document = documents.get(i);
+				int frequency = positionOffsets.get(i + 1) - positionOffsets.get(i);
+				matches[document - from] += frequency;
+				sums[document - from] += scorer.score(term, document, frequency);
+			}
+		}
+
+		PriorityQueue<InvertedIndex.SingleSearchResult> heap = new PriorityQueue<>(Collections.reverseOrder());
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (int document = from; document < to; document++) {
+			int found = matches[document - from];
+			if (found > 0) {
+				double score = scorer.total(document, found, sums[document - from]);
+				if (k > 0) {
+					offer(document, found, score, k, heap);
+				}
+				else {
+					list.add(result(document, found, score));
+				}
+			}
+		}
+		return k > 0 ? new ArrayList<>(heap) : list;
+	}
+
+	/**
+	 * Returns the first word that starts with the prefix or sorts after it.
+	 *
+	 * @param prefix the prefix to lookup
+	 * @return the index of the first word in the prefix range
+	 */
+	public int prefixStart(String prefix) {
+		int low = 0;
+		int high = terms.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparePrefix(terms[middle], prefix) < 0) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the first word after the prefix range, so the words starting with
+	 * the prefix are the contiguous range [start, end) without comparing each one.
+	 *
+	 * @param prefix the prefix to lookup
+	 * @param start the result of {@link #prefixStart(String)}
+	 * @return one past the index of the last word in the prefix range
+	 */
+	public int prefixEnd(String prefix, int start) {
+		int low = start;
+		int high = terms.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparePrefix(terms[middle], prefix) <= 0) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compares the start of a word to a prefix.
+	 *
+	 * @param term the word
+	 * @param prefix the prefix
+	 * @return a negative number if the word sorts before every word starting
+	 *         with the prefix, 0 if it starts with the prefix, and a positive
+	 *         number if it sorts after them
+	 */
+	private static int comparePrefix(String term, String prefix) {
+		int length = Math.min(term.length(), prefix.length());
+		for (int i = 0; i < length; i++) {
+			int difference = term.charAt(i) - prefix.charAt(i);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return term.length() < prefix.length() ? -1 : 0;
+	}
+
+	/**
+	 * Evaluates the words one document at a time using MaxScore pruning. The
+	 * words are ordered by their score upper bound, and once the heap is full,
+	 * the words whose bounds add up to less than the worst result in the heap
+	 * become non-essential: documents found only in those words are never
+	 * visited, and the remaining words of a document are skipped as soon as its
+	 * score can no longer reach the heap.
+	 *
+	 * Only the documents in a range of IDs are visited, so the ranges of a large
+	 * search can be evaluated in parallel, each pruning against its own heap.
+	 *
+	 * @param matching the indexes of the matching words
+	 * @param k the maximum number of results
+	 * @param from the first document ID of the range
+	 * @param to one past the last document ID of the range
+	 * @param heap the best results found so far, worst first
+	 */
+	private void maxScore(int[] matching, int k, int from, int to, PriorityQueue<InvertedIndex.SingleSearchResult> heap) {
+		int n = matching.length;
+		// order the words by increasing bound, packing the bound's bits since it is never negative
+		long[] order = new long[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = Double.doubleToLongBits(bound(matching[i]));
+		}
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, Comparator.comparingLong(i -> order[i]));
+
+		int[] term = new int[n];
+		int[] slot = new int[n];
+		double[] scores = new double[n];
+		int[] cursor = new int[n];
+		int[] end = new int[n];
+		double[] cumulative = new double[n];
+		for (int i = 0; i < n; i++) {
+			term[i] = matching[sorted[i]];
+			slot[sorted[i]] = i;
+			cursor[i] = start(term[i], from);
+			end[i] = start(term[i], to);
+			cumulative[i] = bound(term[i]) + (i > 0 ? cumulative[i - 1] : 0);
+		}
+
+		double threshold = 0;
+		int essential = 0;
+		while (true) {
+			int document = Integer.MAX_VALUE;
+			for (int i = essential; i < n; i++) {
+				if (cursor[i] < end[i]) {
+					document = Math.min(document, documents.get(cursor[i]));
+				}
+			}
+			if (document == Integer.MAX_VALUE) {
+				break;
+			}
+
+			int matches = 0;
+			double sum = 0;
+			Arrays.fill(scores, 0);
+			for (int i = essential; i < n; i++) {
+				if (cursor[i] < end[i] && documents.get(cursor[i]) == document) {
+					int frequency = positionOffsets.get(cursor[i] + 1) - positionOffsets.get(cursor[i]);
+					matches += frequency;
+					scores[i] = scorer.score(term[i], document, frequency);
+					sum += scores[i];
+					cursor[i]++;
+				}
+			}
+
+			boolean pruned = false;
+			for (int i = essential - 1; i >= 0; i--) {
+				if (below(sum + cumulative[i], threshold)) {
+					pruned = true;
+					break;
+				}
+				int found = binarySearch(documents, cursor[i], end[i], document);
+				if (found >= 0) {
+					int frequency = positionOffsets.get(found + 1) - positionOffsets.get(found);
+					matches += frequency;
+					scores[i] = scorer.score(term[i], document, frequency);
+					sum += scores[i];
+					cursor[i] = found + 1;
+				}
+				else {
+					cursor[i] = -(found + 1);
+				}
+			}
+
+			if (pruned) {
+				continue;
+			}
+			// add up the scores in the same order as every other search
+			sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += scores[slot[i]];
+			}
+			if (offer(document, matches, scorer.total(document, matches, sum), k, heap) && heap.size() == k) {
+				threshold = heap.peek().getScore();
+				while (essential < n && below(cumulative[essential], threshold)) {
+					essential++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the first posting of a word whose document ID is at least the
+	 * given one.
+	 *
+	 * @param term the index of the word
+	 * @param document the document ID to lookup
+	 * @return the index of the posting, or the end of the word's postings
+	 */
+	private int start(int term, int document) {
+		int start = termOffsets.get(term);
+		int end = termOffsets.get(term + 1);
+		if (document <= 0) {
+			return start;
+		}
+		if (document >= locations.length) {
+			return end;
+		}
+		int found = binarySearch(documents, start, end, document);
+		return found < 0 ? -(found + 1) : found;
+	}
+
+	/**
+	 * Determines whether a score upper bound is certainly below the threshold,
+	 * leaving a small margin for rounding since the bounds are added up in a
+	 * different order than the scores.
+	 *
+	 * @param bound the score upper bound
+	 * @param threshold the score of the worst result in a full heap
+	 * @return {@code true} if no score within the bound can reach the threshold
+	 */
+	private static boolean below(double bound, double threshold) {
+		return bound * (1 + 1e-9) < threshold;
+	}
+
+	/**
+	 * Returns the highest score any single document gets from the word alone,
+	 * computing it the first time. Concurrent searches may both compute and
+	 * store the same value, but never see part of another search's value.
+	 *
+	 * @param term the index of the word
+	 * @return the score upper bound of the word
+	 */
+	private double bound(int term) {
+		double bound = Double.longBitsToDouble(bounds.get(term));
+		if (Double.isNaN(bound)) {
+			bound = 0;
+			for (int i = termOffsets.get(term); i < termOffsets.get(term + 1); i++) {
+				int frequency = positionOffsets.get(i + 1) - positionOffsets.get(i);
+				bound = Math.max(bound, scorer.score(term, documents.get(i), frequency));
+			}
+			bounds.set(term, Double.doubleToRawLongBits(bound));
+		}
+		return bound;
+	}
+
+	/**
+	 * Adds the document to the heap if it is one of the best k results so far.
+	 *
+	 * @param document the document ID
+	 * @param matches the number of matches found in the document
+	 * @param score the score of the document
+	 * @param k the maximum number of results
+	 * @param heap the best results found so far, worst first
+	 * @return {@code true} if the document was added
+	 */
+	private boolean offer(int document, int matches, double score, int k,
+			PriorityQueue<InvertedIndex.SingleSearchResult> heap) {
+		if (heap.size() < k || better(document, matches, score, heap.peek())) {
+			heap.add(result(document, matches, score));
+			if (heap.size() > k) {
+				heap.poll();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the search result of a document.
+	 *
+	 * @param document the document ID
+	 * @param matches the number of matches found in the document
+	 * @param score the score of the document
+	 * @return the search result
+	 */
+	private InvertedIndex.SingleSearchResult result(int document, int matches, double score) {
+		return new InvertedIndex.SingleSearchResult(locations[document], counts.get(document), matches, score);
+	}
+
+	/**
+	 * Determines whether a document would be sorted before an existing result,
+	 * without creating a search result for the document.
+	 *
+	 * @param document the document ID
+	 * @param matches the number of matches found in the document
+	 * @param score the score of the document
+	 * @param worst the existing result
+	 * @return {@code true} if the document is a better result
+	 * @see InvertedIndex.SingleSearchResult#compareTo(InvertedIndex.SingleSearchResult)
+	 */
+	private boolean better(int document, int matches, double score, InvertedIndex.SingleSearchResult worst) {
+		int result = Double.compare(worst.getScore(), score);
+		if (result == 0) {
+			result = Integer.compare(worst.getMatches(), matches);
+		}
+		if (result == 0) {
+			result = locations[document].compareToIgnoreCase(worst.getLocation());
+		}
+		return result < 0;
+	}
+
+	@Override
+	public void toJsonInvertedIndex(Path path) throws IOException {
+		SimpleJsonWriter.asNested(new LocationView(), path);
+	}
+
+	@Override
+	public void toJsonObject(Path path) throws IOException {
+		Map<String, Integer> wordCount = new LinkedHashMap<>();
+		for (int document = 0; document < locations.length; document++) {
+			wordCount.put(locations[document], counts.get(document));
+		}
+		SimpleJsonWriter.asObject(wordCount, path);
+	}
+
+	/**
+	 * Determines whether the scorer of this index only uses each document, so
+	 * its results can be merged with those of other indexes.
+	 *
+	 * @return {@code true} if scores can be compared with those of other indexes
+	 */
+	@Override
+	public boolean comparableScores() {
+		return scorer.comparable();
+	}
+
+	/**
+	 * Returns the number of word and location pairs stored in the index.
+	 *
+	 * @return the number of postings
+	 */
+	public int postings() {
+		return documents.limit();
+	}
+
+	@Override
+	public String toString() {
+		return new LocationView().toString();
+	}
+	
+	/**
+	 * Merges several frozen indexes into one. The words of every index are
+	 * walked together in sorted order, and the document IDs of each index are
+	 * translated into IDs of the merged locations. If a location is stored in
+	 * more than one index, its positions are combined.
+	 *
+	 * @param segments the indexes to merge
+	 * @return the merged index
+	 */
+	public static FrozenInvertedIndex merge(List<FrozenInvertedIndex> segments) {
+		if (segments.size() == 1) {
+			return segments.get(0);
+		}
+		
+		// merge the locations and translate the document IDs of every segment
+		TreeSet<String> sorted = new TreeSet<>();
+		int termBound = 0;
+		int postingBound = 0;
+		int positionBound = 0;
+		for (FrozenInvertedIndex segment : segments) {
+			sorted.addAll(Arrays.asList(segment.locations));
+			termBound += segment.terms.length;
+			postingBound += segment.documents.limit();
+			positionBound += segment.positions.limit();
+		}
+		String[] locations = sorted.toArray(new String[0]);
+		int[] counts = new int[locations.length];
+		int[][] remap = new int[segments.size()][];
+		for (int s = 0; s < segments.size(); s++) {
+			FrozenInvertedIndex segment = segments.get(s);
+			remap[s] = new int[segment.locations.length];
+			for (int document = 0; document < remap[s].length; document++) {
+				remap[s][document] = Arrays.binarySearch(locations, segment.locations[document]);
+				counts[remap[s][document]] = Math.max(counts[remap[s][document]], segment.counts.get(document));
+			}
+		}
+		
+		String[] terms = new String[termBound];
+		int[] termOffsets = new int[termBound + 1];
+		int[] documents = new int[postingBound];
+		int[] positionOffsets = new int[postingBound + 1];
+		int[] positions = new int[positionBound];
+		int termCount = 0;
+		int postingCount = 0;
+		int positionCount = 0;
+		
+		// walk the sorted words of every segment together
+		int[] cursors = new int[segments.size()];
+		PriorityQueue<Integer> queue = new PriorityQueue<>(
+				Comparator.comparing((Integer s) -> segments.get(s).terms[cursors[s]]));
+		for (int s = 0; s < segments.size(); s++) {
+			if (segments.get(s).terms.length > 0) {
+				queue.add(s);
+			}
+		}
+		List<Integer> matching = new ArrayList<>();
+		while (!queue.isEmpty()) {
+			String term = segments.get(queue.peek()).terms[cursors[queue.peek()]];
+			matching.clear();
+			while (!queue.isEmpty() && segments.get(queue.peek()).terms[cursors[queue.peek()]].equals(term)) {
+				matching.add(queue.poll());
+			}
+			
+			// order the postings of the word from every matching segment by merged document ID
+			int entries = 0;
+			for (int s : matching) {
+				FrozenInvertedIndex segment = segments.get(s);
+				entries += segment.termOffsets.get(cursors[s] + 1) - segment.termOffsets.get(cursors[s]);
+			}
+			long[] order = new long[entries];
+			int[] owners = new int[entries];
+			int[] sources = new int[entries];
+			int entry = 0;
+			for (int s : matching) {
+				FrozenInvertedIndex segment = segments.get(s);
+				for (int i = segment.termOffsets.get(cursors[s]); i < segment.termOffsets.get(cursors[s] + 1); i++) {
+					order[entry] = ((long) remap[s][segment.documents.get(i)] << 32) | entry;
+					owners[entry] = s;
+					sources[entry] = i;
+					entry++;
+				}
+			}
+			Arrays.sort(order);
+			
+			terms[termCount] = term;
+			termOffsets[termCount++] = postingCount;
+			for (int k = 0; k < order.length; k++) {
+				int document = (int) (order[k] >>> 32);
+				boolean duplicate = postingCount > termOffsets[termCount - 1] && documents[postingCount - 1] == document;
+				if (!duplicate) {
+					documents[postingCount] = document;
+					positionOffsets[postingCount++] = positionCount;
+				}
+				FrozenInvertedIndex segment = segments.get(owners[(int) order[k]]);
+				int i = sources[(int) order[k]];
+				for (int p = segment.positionOffsets.get(i); p < segment.positionOffsets.get(i + 1); p++) {
+					positions[positionCount++] = segment.positions.get(p);
+				}
+				if (duplicate) {
+					// combine the positions of a location stored in more than one segment
+					int start = positionOffsets[postingCount - 1];
+					Arrays.sort(positions, start, positionCount);
+					int end = start;
+					for (int p = start; p < positionCount; p++) {
+						if (p == start || positions[p] != positions[end - 1]) {
+							positions[end++] = positions[p];
+						}
+					}
+					positionCount = end;
+				}
+			}
+			
+			for (int s : matching) {
+				if (++cursors[s] < segments.get(s).terms.length) {
+					queue.add(s);
+				}
+			}
+		}
+		termOffsets[termCount] = postingCount;
+		positionOffsets[postingCount] = positionCount;
+		
+		return new FrozenInvertedIndex(Arrays.copyOf(terms, termCount), Arrays.copyOf(termOffsets, termCount + 1),
+				Arrays.copyOf(documents, postingCount), Arrays.copyOf(positionOffsets, postingCount + 1),
+				Arrays.copyOf(positions, positionCount), locations, counts);
+	}
+	
+	/**
+	 * Writes the index to a binary file that can be memory-mapped by
+	 * {@link #load(Path)}. The file starts with a header of counts, followed by
+	 * the integer arrays and then the words and locations as length-prefixed
+	 * UTF-8 bytes, all big-endian. The file may be larger than 2 GB, but each
+	 * integer array is mapped on its own, so none of them can be.
+	 *
+	 * @param path the path of the file to write
+	 * @throws IOException if an IO error occurs or an array is too large to map
+	 */
+	public void save(Path path) throws IOException {
+		List<IntBuffer> arrays = List.of(termOffsets, documents, positionOffsets, positions, counts);
+		for (IntBuffer buffer : arrays) {
+			if (buffer.limit() > MAX_MAPPED_INTS) {
+				throw new IOException("The inverted index has an array of " + buffer.limit()
+						+ " integers, which is too large to memory-map.");
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(terms.length);
+			out.writeInt(locations.length);
+			out.writeInt(documents.limit());
+			out.writeInt(positions.limit());
+			for (IntBuffer buffer : arrays) {
+				for (int i = 0; i < buffer.limit(); i++) {
+					out.writeInt(buffer.get(i));
+				}
+			}
+			for (String[] strings : List.of(terms, locations)) {
+				for (String string : strings) {
+					byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Memory-maps a binary file written by {@link #save(Path)}. A single mapping
+	 * holds at most 2 GB, so each integer array is mapped as its own region and
+	 * the file itself may be larger. The words and locations are decoded onto
+	 * the heap anyway, so they are read instead of mapped.
+	 *
+	 * @param path the path of the file to read
+	 * @return the mapped inverted index
+	 * @throws IOException if an IO error occurs or the file is not a saved index
+	 */
+	public static FrozenInvertedIndex load(Path path) throws IOException {
+		// the mappings stay valid after the channel is closed
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = map(channel, 0, HEADER_BYTES, path);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not a saved inverted index: " + path);
+			}
+			int termCount = header.getInt();
+			int documentCount = header.getInt();
+			int postingCount = header.getInt();
+			int positionCount = header.getInt();
+			
+			long offset = HEADER_BYTES;
+			IntBuffer termOffsets = ints(channel, offset, termCount + 1L, path);
+			offset += (termCount + 1L) * Integer.BYTES;
+			IntBuffer documents = ints(channel, offset, postingCount, path);
+			offset += (long) postingCount * Integer.BYTES;
+			IntBuffer positionOffsets = ints(channel, offset, postingCount + 1L, path);
+			offset += (postingCount + 1L) * Integer.BYTES;
+			IntBuffer positions = ints(channel, offset, positionCount, path);
+			offset += (long) positionCount * Integer.BYTES;
+			IntBuffer counts = ints(channel, offset, documentCount, path);
+			offset += (long) documentCount * Integer.BYTES;
+			
+			channel.position(offset);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			String[] terms = strings(in, termCount);
+			String[] locations = strings(in, documentCount);
+			return new FrozenInvertedIndex(terms, termOffsets, documents, positionOffsets, positions, locations, counts, MatchScorer::new,
+					DEFAULT_PARALLEL_POSTINGS);
+		}
+		catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+				| NegativeArraySizeException | EOFException e) {
+			throw new IOException("Truncated or corrupt inverted index: " + path, e);
+		}
+	}
+	
+	/**
+	 * Maps a region of a saved index, checking that it is inside the file.
+	 *
+	 * @param channel the open file
+	 * @param offset the index of the first byte of the region
+	 * @param length the number of bytes in the region
+	 * @param path the path of the file, used in error messages
+	 * @return the mapped bytes
+	 * @throws IOException if the region is outside the file or too large to map
+	 */
+	private static ByteBuffer map(FileChannel channel, long offset, long length, Path path) throws IOException {
+		if (length < 0 || offset + length > channel.size()) {
+			throw new IOException("Truncated or corrupt inverted index: " + path);
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("An array of the inverted index is too large to memory-map: " + path);
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+	
+	/**
+	 * Maps an array of integers of a saved index as its own region.
+	 *
+	 * @param channel the open file
+	 * @param offset the index of the first byte of the array
+	 * @param count the number of integers
+	 * @param path the path of the file, used in error messages
+	 * @return a view of the integers
+	 * @throws IOException if the array is outside the file or too large to map
+	 */
+	private static IntBuffer ints(FileChannel channel, long offset, long count, Path path) throws IOException {
+		return map(channel, offset, count * Integer.BYTES, path).asIntBuffer();
+	}
+	
+	/**
+	 * Decodes the next length-prefixed UTF-8 strings of the file.
+	 *
+	 * @param in the file, positioned at the first string
+	 * @param count the number of strings
+	 * @return the decoded strings
+	 * @throws IOException if an IO error occurs
+	 */
+	private static String[] strings(DataInputStream in, int count) throws IOException {
+		String[] strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	/**
+	 * Searches a range of document IDs, splitting it in half until each task
+	 * has only a few documents. Each of those is evaluated with MaxScore pruning
+	 * whenever a search of every document would be.
+	 */
+	private class RangeSearch extends RecursiveTask<List<InvertedIndex.SingleSearchResult>> {
+		/** Unused serialization ID. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The sorted indexes of the matching words
+		 */
+		private final int[] matching;
+
+		/**
+		 * The merged postings of prefixes
+		 */
+		private final List<MergedPostings> prefixes;
+
+		/**
+		 * The maximum number of results of each range, or 0 for all of them
+		 */
+		private final int k;
+
+		/**
+		 * The first document ID of the range
+		 */
+		private final int from;
+
+		/**
+		 * One past the last document ID of the range
+		 */
+		private final int to;
+
+		/**
+		 * The most documents searched without splitting the range
+		 */
+		private final int grain;
+
+		/**
+		 * Constructor
+		 *
+		 * @param matching the sorted indexes of the matching words
+		 * @param prefixes the merged postings of prefixes
+		 * @param k the maximum number of results of each range, or 0 for all of them
+		 * @param from the first document ID of the range
+		 * @param to one past the last document ID of the range
+		 * @param grain the most documents searched without splitting the range
+		 */
+		public RangeSearch(int[] matching, List<MergedPostings> prefixes, int k, int from, int to, int grain) {
+			this.matching = matching;
+			this.prefixes = prefixes;
+			this.k = k;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected List<InvertedIndex.SingleSearchResult> compute() {
+			if (to - from <= grain) {
+				if (pruned(matching, prefixes, k)) {
+					PriorityQueue<InvertedIndex.SingleSearchResult> heap = new PriorityQueue<>(k + 1,
+							Collections.reverseOrder());
+					maxScore(matching, k, from, to, heap);
+					return new ArrayList<>(heap);
+				}
+				return accumulate(matching, prefixes, k, from, to);
+			}
+			int middle = (from + to) >>> 1;
+			RangeSearch left = new RangeSearch(matching, prefixes, k, from, middle, grain);
+			left.fork();
+			List<InvertedIndex.SingleSearchResult> right = new RangeSearch(matching, prefixes, k, middle, to, grain).compute();
+			List<InvertedIndex.SingleSearchResult> found = left.join();
+			found.addAll(right);
+			return found;
+		}
+	}
+
+	/**
+	 * The postings of every word in a prefix range merged into one list, with
+	 * the total number of positions each document has across those words.
+	 */
+	private class MergedPostings {
+		/**
+		 * The sorted document IDs
+		 */
+		private final int[] documents;
+
+		/**
+		 * The total number of positions of each document
+		 */
+		private final int[] frequencies;
+
+		/**
+		 * Constructor merges the postings of a range of words
+		 *
+		 * @param start the index of the first word
+		 * @param end one past the index of the last word
+		 */
+		public MergedPostings(int start, int end) {
+			int[] total = new int[locations.length];
+			int size = 0;
+			for (int term = start; term < end; term++) {
+				for (int i = termOffsets.get(term); i < termOffsets.get(term + 1); i++) {
+					int document = FrozenInvertedIndex.this.documents.get(i);
+					if (total[document] == 0) {
+						size++;
+					}
+					total[document] += positionOffsets.get(i + 1) - positionOffsets.get(i);
+				}
+			}
+			this.documents = new int[size];
+			this.frequencies = new int[size];
+			int j = 0;
+			for (int document = 0; document < total.length; document++) {
+				if (total[document] > 0) {
+					this.documents[j] = document;
+					this.frequencies[j++] = total[document];
+				}
+			}
+		}
+	}
+
+	/**
+	 * An unmodifiable view of a range of the positions array.
+	 */
+	private class Slice extends AbstractList<Integer> implements RandomAccess {
+		/**
+		 * The first index of the range
+		 */
+		private final int start;
+
+		/**
+		 * The index after the range
+		 */
+		private final int end;
+
+		/**
+		 * Constructor
+		 *
+		 * @param start the first index of the range
+		 * @param end the index after the range
+		 */
+		public Slice(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Integer get(int index) {
+			Objects.checkIndex(index, size());
+			return positions.get(start + index);
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+
+	/**
+	 * A read-only view of the index as nested maps, used when writing the index
+	 * as JSON.
+	 */
+	private class LocationView extends AbstractMap<String, Map<String, Collection<Integer>>> {
+		@Override
+		public Set<Entry<String, Map<String, Collection<Integer>>>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<Entry<String, Map<String, Collection<Integer>>>> iterator() {
+					return new Iterator<>() {
+						private int term = 0;
+
+						@Override
+						public boolean hasNext() {
+							return term < terms.length;
+						}
+
+						@Override
+						public Entry<String, Map<String, Collection<Integer>>> next() {
+							Map<String, Collection<Integer>> found = new LinkedHashMap<>();
+							for (int i = termOffsets.get(term); i < termOffsets.get(term + 1); i++) {
+								found.put(locations[documents.get(i)], new Slice(positionOffsets.get(i), positionOffsets.get(i + 1)));
+							}
+							return Map.entry(terms[term++], found);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return terms.length;
+				}
+			};
+		}
+	}
+}
@@ -1,14 +1,18 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.Set;
+import java.util.function.ToIntFunction;
 
 /**
  * A nested inverted index to store words, the locations the words were found in, 
@@ -17,23 +21,67 @@ import java.util.Set;
  * @author Charles Sy
  *
  */
-public class InvertedIndex {
+public class InvertedIndex implements WritableInvertedIndexInterface {
 	/**
-	 * Multiple-leveled nested TreeMap that serves as an inverted index
+	 * Maps each word to the documents it was found in and its positions in each
 	 */
-	private final TreeMap<String, TreeMap<String, Set<Integer>>> map;
+	private final TreeMap<String, Postings> map;
 	
 	/**
-	 * Stores word count
+	 * Assigns each location an ID and stores its word count
 	 */
-	private final TreeMap<String, Integer> wordCount;
+	private final DocumentTable documents;
+	
+	/**
+	 * Posting lists that have been added to since the last call to {@link #seal()}
+	 */
+	private final ArrayList<PostingList> unsealed;
+	
+	/**
+	 * Incremented every time words are added
+	 */
+	private long version;
+	
+	/**
+	 * The k-gram index of the words, or {@code null} until the first wildcard or
+	 * fuzzy search of an index that does not share one
+	 */
+	private ConcurrentKGramIndex kgrams;
 	
 	/**
 	 * Constructor defines map
 	 */
 	public InvertedIndex() {
-		this.map = new TreeMap<String, TreeMap<String, Set<Integer>>>();
-		this.wordCount =  new TreeMap<>();
+		this(new DocumentTable());
+	}
+	
+	/**
+	 * Constructor that shares a document table, so several indexes holding
+	 * different words use the same document IDs. The caller is responsible for
+	 * synchronizing access to a shared table.
+	 * 
+	 * @param documents the document table to use
+	 */
+	public InvertedIndex(DocumentTable documents) {
+		this(documents, null);
+	}
+	
+	/**
+	 * Constructor that shares a document table and a k-gram index, so several
+	 * indexes holding different words keep one k-gram index of all their words
+	 * up to date as words are added. The caller is responsible for synchronizing
+	 * access to a shared table.
+	 * 
+	 * @param documents the document table to use
+	 * @param kgrams the k-gram index to add new words to, or {@code null} to
+	 *        create one the first time it is needed
+	 */
+	public InvertedIndex(DocumentTable documents, ConcurrentKGramIndex kgrams) {
+		this.map = new TreeMap<String, Postings>();
+		this.documents = documents;
+		this.unsealed = new ArrayList<>();
+		this.version = 0;
+		this.kgrams = kgrams;
 	}
 	
 	/**
@@ -44,12 +92,75 @@ public class InvertedIndex {
 	 * @param position the position the word was found in the location
 	 */
 	public void add(String word, String location, Integer position) {
-		map.putIfAbsent(word, new TreeMap<>());
-		map.get(word).putIfAbsent(location, new TreeSet<>());
-		if (map.get(word).get(location).add(position)) {
+		int document = documents.id(location);
+		PostingList positions = map.computeIfAbsent(word, this::newWord).getOrAdd(document);
+		if (positions.isEmpty() || positions.isSealed()) {
+			unsealed.add(positions);
+		}
+		if (positions.add(position.intValue())) {
 			//only update if current value is less than the new one
-			wordCount.merge(location, position, Integer::max);
+			documents.updateCount(document, position);
+		}
+		version++;
+	}
+	
+	@Override
+	public long version() {
+		return version;
+	}
+	
+	/**
+	 * Delta encodes every posting list added to since the last call. Should be
+	 * called once a document has been completely added to the index.
+	 */
+	public void seal() {
+		for (PostingList positions : unsealed) {
+			positions.seal();
+		}
+		unsealed.clear();
+	}
+	
+	/**
+	 * Adds the offset to every position and word count, which moves the words
+	 * of one part of a file after the words of the parts before it.
+	 * 
+	 * @param offset the number of words before this part
+	 */
+	public void shift(int offset) {
+		for (Postings postings : map.values()) {
+			for (int i = 0; i < postings.size(); i++) {
+				postings.positions(i).shift(offset);
+			}
+		}
+		documents.shift(offset);
+		version++;
+	}
+	
+	/**
+	 * Combines indexes of consecutive parts of the same locations into a new
+	 * index, such as the parts of a large file once each has been moved after
+	 * the parts before it by {@link #shift(int)}. The posting lists of every
+	 * word are built once from all of the parts, so the work grows with the
+	 * number of positions instead of the number of positions times parts.
+	 * 
+	 * @param parts the indexes of each part in order
+	 * @return the combined inverted index
+	 */
+	public static InvertedIndex concat(List<InvertedIndex> parts) {
+		InvertedIndex index = new InvertedIndex();
+		int[][] remaps = new int[parts.size()][];
+		TreeMap<String, Postings[]> words = new TreeMap<>();
+		for (int part = 0; part < remaps.length; part++) {
+			remaps[part] = index.addDocuments(parts.get(part));
+			for (var entry : parts.get(part).map.entrySet()) {
+				words.computeIfAbsent(entry.getKey(), k -> new Postings[remaps.length])[part] = entry.getValue();
+			}
 		}
+		for (var entry : words.entrySet()) {
+			index.map.put(entry.getKey(), Postings.concat(entry.getValue(), remaps));
+		}
+		index.version++;
+		return index;
 	}
 	
 	/**
@@ -85,8 +196,9 @@ public class InvertedIndex {
 	 *         the number of words stored for that element
 	 */
 	public int size(String word, String location) {
-		if (contains(word, location)) {
-			return map.get(word).get(location).size();
+		PostingList positions = positions(word, location);
+		if (positions != null) {
+			return positions.size();
 		}
 		return -1;
 	}
@@ -110,7 +222,7 @@ public class InvertedIndex {
 	 * @return {@true} if the location and word is stored in the index
 	 */
 	public boolean contains(String word, String location) {
-		return (map.containsKey(word) && map.get(word).containsKey(location));
+		return positions(word, location) != null;
 	}
 	
 	/**
@@ -123,7 +235,24 @@ public class InvertedIndex {
 	 * @return {@true} if the location and word is stored in the index
 	 */
 	public boolean contains(String word, String location, Integer position) {
-		return (contains(word, location) && map.get(word).get(location).contains(position));
+		PostingList positions = positions(word, location);
+		return positions != null && positions.contains(position.intValue());
+	}
+	
+	/**
+	 * Returns the posting list stored for the word and location.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location to lookup
+	 * @return the posting list, or {@code null} if the word was not found in the location
+	 */
+	private PostingList positions(String word, String location) {
+		Postings postings = map.get(word);
+		int document = documents.find(location);
+		if (postings == null || document < 0) {
+			return null;
+		}
+		return postings.get(document);
 	}
 	
 	/**
@@ -137,17 +266,17 @@ public class InvertedIndex {
 	}
 	
 	/**
-	 * Returns an unmodifiable view of the locations stored in the index for the
-	 * provided word, or an empty collection if the word is not in the
-	 * index.
+	 * Returns an unmodifiable collection of the locations stored in the index for
+	 * the provided word in sorted order, or an empty collection if the word is
+	 * not in the index.
 	 *
 	 * @param word the word to lookup
-	 * @return an unmodifiable view of the locations stored for the word
+	 * @return an unmodifiable collection of the locations stored for the word
 	 * @see Collections#unmodifiableCollection(Collection)
 	 */
 	public Collection<String> get(String word) {
 		if (map.containsKey(word)) {
-			return Collections.unmodifiableCollection(map.get(word).keySet());
+			return Collections.unmodifiableCollection(locations(map.get(word)).keySet());
 		}
 		return Collections.emptySet();
 	}
@@ -163,15 +292,50 @@ public class InvertedIndex {
 	 * @see Collections#unmodifiableCollection(Collection)
 	 */
 	public Collection<Integer> get(String word, String location) {
-		if (contains(word, location)) { 
-			return Collections.unmodifiableCollection(map.get(word).get(location));
+		PostingList positions = positions(word, location);
+		if (positions != null) { 
+			return Collections.unmodifiableCollection(positions);
 		}
 		return Collections.emptySet();
 	}
 	
+	/**
+	 * Translates the document IDs of the postings back into locations.
+	 *
+	 * @param postings the postings of a word
+	 * @return a map of locations to positions sorted by location
+	 */
+	private TreeMap<String, PostingList> locations(Postings postings) {
+		TreeMap<String, PostingList> locations = new TreeMap<>();
+		for (int i = 0; i < postings.size(); i++) {
+			locations.put(documents.location(postings.document(i)), postings.positions(i));
+		}
+		return locations;
+	}
+	
+	/**
+	 * Returns a read-only view of the positions of every word by location, sorted
+	 * by word and location. The posting lists are shared with this index, so they
+	 * should not be modified.
+	 * 
+	 * @return a read-only view of the index
+	 */
+	public Map<String, Map<String, PostingList>> postings() {
+		return Collections.unmodifiableMap(new LocationView());
+	}
+	
+	/**
+	 * Returns the word count of every location sorted by location.
+	 * 
+	 * @return a sorted map of locations to word counts
+	 */
+	public Map<String, Integer> counts() {
+		return documents.toMap();
+	}
+	
 	@Override
 	public String toString() {
-		return this.map.toString();
+		return new LocationView().toString();
 	}
 	
 	/**
@@ -181,22 +345,7 @@ public class InvertedIndex {
 	 * @throws IOException if an IO error occurs
 	 */
 	public void toJsonInvertedIndex(Path path) throws IOException {
-		SimpleJsonWriter.asNested(map, path);
-	}
-	
-	/**
-	 * Helper method that determines what type of search to perform
-	 * 
-	 * @param queries the parsed words from a single line of the query file
-	 * @param exact the flag that determines what type of search to perform
-	 * @return a sorted list of search results
-	 */
-	public List<SingleSearchResult> search(Set<String> queries, boolean exact) {
-		if (exact) {
-			return exactSearch(queries);
-		} else {
-			return partialSearch(queries);
-		}
+		SimpleJsonWriter.asNested(new LocationView(), path);
 	}
 	
 	/**
@@ -206,20 +355,46 @@ public class InvertedIndex {
 	 * @return sorted list of search results
 	 */
 	public List<SingleSearchResult> exactSearch(Set<String> queries) {
-		/* Keeps track of values added. Necessary to easily lookup values that we've already processed, thus 
-		 * eliminating duplicate paths and search results. Searching is faster w/ maps rather than lists. */
-		Map<String, SingleSearchResult> check = new HashMap<>(); 
+		/* Keeps track of values added by document ID. Necessary to easily lookup values that we've already 
+		 * processed, thus eliminating duplicate paths and search results. */
+		SingleSearchResult[] check = new SingleSearchResult[documents.size()];
 		List<SingleSearchResult> list = new ArrayList<>();
 		//for each parsed word from set
 		for (String word : queries) {
-			if (contains(word)) {
-				searchHelper(check, list, word);
-			}
+			exactSearch(word, check, list);
 		}
 		Collections.sort(list);
 		return list;
 	}
 	
+	@Override
+	public List<SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		SingleSearchResult[] check = new SingleSearchResult[documents.size()];
+		List<SingleSearchResult> list = new ArrayList<>();
+		for (String query : queries) {
+			if (exact) {
+				exactSearch(query, check, list);
+			}
+			else {
+				partialSearch(query, check, list);
+			}
+		}
+		return SearchableIndexInterface.top(list, k);
+	}
+	
+	/**
+	 * Adds the locations of a single word to the results found so far.
+	 * 
+	 * @param word the stemmed and cleaned word from the query line
+	 * @param check the results added so far indexed by document ID
+	 * @param list the unsorted results added so far
+	 */
+	public void exactSearch(String word, SingleSearchResult[] check, List<SingleSearchResult> list) {
+		if (contains(word)) {
+			searchHelper(check, list, word);
+		}
+	}
+	
 	/**
 	 * Performs partial search
 	 * 
@@ -227,38 +402,51 @@ public class InvertedIndex {
 	 * @return sorted list of search results
 	 */
 	public List<SingleSearchResult> partialSearch(Set<String> queries) {
-		Map<String, SingleSearchResult> check = new HashMap<>();
+		SingleSearchResult[] check = new SingleSearchResult[documents.size()];
 		List<SingleSearchResult> list = new ArrayList<>();
 		for (String query : queries) { 
-			for (String word : map.tailMap(query).keySet()) {
-				if (!word.startsWith(query)) {
-					break;
-				} 
-				searchHelper(check, list, word);
-			}
+			partialSearch(query, check, list);
 		}
 		Collections.sort(list);
 		return list;
 	}
 	
+	/**
+	 * Adds the locations of every word starting with a single query to the
+	 * results found so far.
+	 * 
+	 * @param query the stemmed and cleaned word from the query line
+	 * @param check the results added so far indexed by document ID
+	 * @param list the unsorted results added so far
+	 */
+	public void partialSearch(String query, SingleSearchResult[] check, List<SingleSearchResult> list) {
+		for (String word : map.tailMap(query).keySet()) {
+			if (!word.startsWith(query)) {
+				break;
+			} 
+			searchHelper(check, list, word);
+		}
+	}
+	
 	/**
 	 * Helper function that deals with searching
 	 * 
-	 * @param check the hash map that keeps track of values added
+	 * @param check the results added so far indexed by document ID
 	 * @param list the array list to add a single search result
 	 * @param word the stemmed and cleaned word from the query line
 	 */
-	private void searchHelper(Map<String, SingleSearchResult> check, List<SingleSearchResult> list, String word) {
+	private void searchHelper(SingleSearchResult[] check, List<SingleSearchResult> list, String word) {
+		Postings postings = map.get(word);
 		//for each location stored in the inverted index
-		for (String path : map.get(word).keySet()) {
-			//check if map doesn't contain the location
-			if (!check.containsKey(path)) {
-				SingleSearchResult result = new SingleSearchResult(path);
-				check.put(path, result);
-				list.add(result);
+		for (int i = 0; i < postings.size(); i++) {
+			int document = postings.document(i);
+			//check if the location has no result yet
+			if (check[document] == null) {
+				check[document] = new SingleSearchResult(documents.location(document), documents.count(document));
+				list.add(check[document]);
 			}
 			//perform a match
-			check.get(path).update(word);
+			check[document].update(postings.positions(i).size());
 		}
 	}
 	
@@ -269,7 +457,7 @@ public class InvertedIndex {
 	 * @throws IOException if an IO error occurs
 	 */
 	public void toJsonObject(Path path) throws IOException {
-		SimpleJsonWriter.asObject(wordCount, path);
+		SimpleJsonWriter.asObject(documents.toMap(), path);
 	}
 	
 	/**
@@ -287,41 +475,269 @@ public class InvertedIndex {
 	}
 	
 	/**
-	 * Merges other inverted index to current inverted index
+	 * Merges other inverted index to current inverted index. The posting lists of
+	 * the other index are sealed and shared as they are moved over, so the other
+	 * index should not be added to afterwards.
 	 * 
 	 * @param other the other inverted index
 	 */
 	public void addAll(InvertedIndex other) {
-		// merge inverted index
-		for (String word : other.map.keySet()) {
-			if (this.map.containsKey(word)) {
-				for (String location : other.map.get(word).keySet()) {
-					if (this.map.get(word).containsKey(location)) {
-						this.map.get(word).get(location).addAll(other.map.get(word).get(location));
-					} else {
-						this.map.get(word).put(location, other.map.get(word).get(location));
-					}
-				}
-			} else {
-				this.map.put(word, other.map.get(word));
+		addAll(other, addDocuments(other));
+	}
+	
+	/**
+	 * Returns the number of locations in the document table, which is also one
+	 * more than the largest document ID.
+	 * 
+	 * @return the number of locations
+	 */
+	public int documents() {
+		return documents.size();
+	}
+	
+	/**
+	 * Assigns every location of the other index an ID in this index's document
+	 * table and merges the word counts, without merging any words.
+	 * 
+	 * @param other the other inverted index
+	 * @return the ID in this index of each document ID in the other index
+	 */
+	public int[] addDocuments(InvertedIndex other) {
+		return documents.addAll(other.documents);
+	}
+	
+	/**
+	 * Splits the words of this index into several indexes that share its
+	 * document table, without copying any postings. Each word is read once, so
+	 * an index merged into several stripes does not have to be walked again for
+	 * every stripe.
+	 * 
+	 * @param count the number of parts
+	 * @param part the part of each word, between 0 and count
+	 * @return the parts, which should only be read
+	 */
+	public InvertedIndex[] partition(int count, ToIntFunction<String> part) {
+		InvertedIndex[] parts = new InvertedIndex[count];
+		for (int i = 0; i < count; i++) {
+			parts[i] = new InvertedIndex(documents);
+		}
+		for (var entry : map.entrySet()) {
+			parts[part.applyAsInt(entry.getKey())].map.put(entry.getKey(), entry.getValue());
+		}
+		return parts;
+	}
+	
+	/**
+	 * Merges the words of the other inverted index, whose locations were
+	 * already added by {@link #addDocuments(InvertedIndex)}.
+	 * 
+	 * @param other the other inverted index
+	 * @param remap the ID in this index of each document ID in the other index
+	 */
+	public void addAll(InvertedIndex other, int[] remap) {
+		if (other.map.isEmpty()) {
+			return;
+		}
+		// a small index is cheaper to look up word by word than to walk this whole index
+		if ((long) other.map.size() * (32 - Integer.numberOfLeadingZeros(map.size())) < map.size()) {
+			for (var entry : other.map.entrySet()) {
+				map.computeIfAbsent(entry.getKey(), this::newWord).addAll(entry.getValue(), remap);
+			}
+			version++;
+			return;
+		}
+		
+		// otherwise walk both sorted maps together, collecting the new words
+		Iterator<Map.Entry<String, Postings>> words = map.entrySet().iterator();
+		Map.Entry<String, Postings> current = words.hasNext() ? words.next() : null;
+		TreeMap<String, Postings> added = new TreeMap<>();
+		for (var entry : other.map.entrySet()) {
+			String word = entry.getKey();
+			while (current != null && current.getKey().compareTo(word) < 0) {
+				current = words.hasNext() ? words.next() : null;
+			}
+			if (current != null && current.getKey().equals(word)) {
+				current.getValue().addAll(entry.getValue(), remap);
+			}
+			else {
+				Postings postings = new Postings();
+				postings.addAll(entry.getValue(), remap);
+				added.put(word, postings);
+			}
+		}
+		// copied in linear time when this index was empty
+		map.putAll(added);
+		if (kgrams != null) {
+			kgrams.addAll(added.keySet());
+		}
+		version++;
+	}
+	
+	/**
+	 * Creates the postings of a word that is not in the index yet, adding the
+	 * word to the k-gram index if there is one.
+	 * 
+	 * @param word the new word
+	 * @return the empty postings of the word
+	 */
+	private Postings newWord(String word) {
+		if (kgrams != null) {
+			kgrams.add(word);
+		}
+		return new Postings();
+	}
+	
+	/**
+	 * Returns the k-gram index of the words, creating it the first time. After
+	 * that it is kept up to date as words are added.
+	 * 
+	 * @return the k-gram index
+	 */
+	private ConcurrentKGramIndex kgrams() {
+		if (kgrams == null) {
+			kgrams = new ConcurrentKGramIndex();
+			kgrams.addAll(map.keySet());
+		}
+		return kgrams;
+	}
+	
+	/**
+	 * Performs a wildcard search by finding the matching words in the k-gram
+	 * index and searching for them exactly.
+	 * 
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return search(kgrams().wildcard(queries), true, k);
+	}
+	
+	/**
+	 * Performs a fuzzy search by finding the similar words in the k-gram index
+	 * and searching for them exactly.
+	 * 
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return search(kgrams().fuzzy(queries, distance), true, k);
+	}
+
+	/**
+	 * Compacts the index into a read-only snapshot backed by flat arrays, which
+	 * is faster to search and uses less memory. The documents are renumbered so
+	 * their IDs are in sorted order of location.
+	 * 
+	 * @return the frozen inverted index
+	 */
+	public FrozenInvertedIndex freeze() {
+		// sort the document IDs by location
+		int[] rank = new int[documents.size()];
+		String[] locations = new String[documents.size()];
+		int[] counts = new int[documents.size()];
+		Integer[] sorted = new Integer[documents.size()];
+		for (int id = 0; id < sorted.length; id++) {
+			sorted[id] = id;
+		}
+		Arrays.sort(sorted, Comparator.comparing(documents::location));
+		for (int i = 0; i < sorted.length; i++) {
+			rank[sorted[i]] = i;
+			locations[i] = documents.location(sorted[i]);
+			counts[i] = documents.count(sorted[i]);
+		}
+		
+		// size the flat arrays
+		String[] terms = map.keySet().toArray(new String[0]);
+		int postings = 0;
+		int total = 0;
+		for (Postings entry : map.values()) {
+			postings += entry.size();
+			for (int i = 0; i < entry.size(); i++) {
+				total += entry.positions(i).size();
+			}
+		}
+		int[] termOffsets = new int[terms.length + 1];
+		int[] frozenDocuments = new int[postings];
+		int[] positionOffsets = new int[postings + 1];
+		int[] positions = new int[total];
+		
+		// copy the postings of every word in sorted order of location
+		int term = 0;
+		int posting = 0;
+		int position = 0;
+		for (Postings entry : map.values()) {
+			termOffsets[term++] = posting;
+			long[] order = new long[entry.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = ((long) rank[entry.document(i)] << 32) | i;
+			}
+			Arrays.sort(order);
+			for (long packed : order) {
+				int i = (int) packed;
+				frozenDocuments[posting] = (int) (packed >>> 32);
+				positionOffsets[posting++] = position;
+				int[] found = entry.positions(i).toIntArray();
+				System.arraycopy(found, 0, positions, position, found.length);
+				position += found.length;
 			}
 		}
-		// merge word count
-		for (String location : other.wordCount.keySet()) {
-			wordCount.merge(location, other.wordCount.get(location), Integer::max);
+		termOffsets[term] = posting;
+		positionOffsets[posting] = position;
+		return new FrozenInvertedIndex(terms, termOffsets, frozenDocuments, positionOffsets, positions, locations, counts);
+	}
+
+	/**
+	 * A read-only view of the index that translates document IDs back into
+	 * locations one word at a time, used when writing the index as JSON.
+	 */
+	private class LocationView extends AbstractMap<String, Map<String, PostingList>> {
+		@Override
+		public Set<Entry<String, Map<String, PostingList>>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<Entry<String, Map<String, PostingList>>> iterator() {
+					Iterator<Map.Entry<String, Postings>> words = map.entrySet().iterator();
+					return new Iterator<>() {
+						@Override
+						public boolean hasNext() {
+							return words.hasNext();
+						}
+
+						@Override
+						public Entry<String, Map<String, PostingList>> next() {
+							Entry<String, Postings> next = words.next();
+							return Map.entry(next.getKey(), locations(next.getValue()));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return map.size();
+				}
+			};
 		}
 	}
 
 	/**
-	 * A non-static inner class that sorts and stores a single search result
+	 * A static nested class that sorts and stores a single search result
 	 * @author Charles Sy
 	 *
 	 */
-	public class SingleSearchResult implements Comparable<SingleSearchResult> {
+	public static class SingleSearchResult implements Comparable<SingleSearchResult> {
 		/**
 		 * The location of the text file
 		 */
 		private final String location;
+		/**
+		 * The total number of words in the text file
+		 */
+		private final int wordCount;
 		/**
 		 * The total number of times any of the matching query words appear in the text file
 		 */
@@ -335,12 +751,29 @@ public class InvertedIndex {
 		 * Constructor
 		 * 
 		 * @param location the location of the text file
+		 * @param wordCount the total number of words in the text file
 		 */
-		public SingleSearchResult(String location) {
+		public SingleSearchResult(String location, int wordCount) {
 			this.location = location;
+			this.wordCount = wordCount;
 			this.matches = 0;
 		}
 		
+		/**
+		 * Constructor for a result whose matches were already counted and scored
+		 * 
+		 * @param location the location of the text file
+		 * @param wordCount the total number of words in the text file
+		 * @param matches the total number of times any of the matching query words appear in the text file
+		 * @param score the score of the text file
+		 */
+		public SingleSearchResult(String location, int wordCount, int matches, double score) {
+			this.location = location;
+			this.wordCount = wordCount;
+			this.matches = matches;
+			this.score = score;
+		}
+		
 		/**
 		 * Getter
 		 * 
@@ -350,6 +783,15 @@ public class InvertedIndex {
 			return location;
 		}
 		
+		/**
+		 * Getter
+		 * 
+		 * @return total words in the text file
+		 */
+		public int getWordCount() {
+			return wordCount;
+		}
+		
 		/**
 		 * Getter
 		 * 
@@ -372,11 +814,11 @@ public class InvertedIndex {
 		/**
 		 * Updates the amount of matches and calculates the score
 		 * 
-		 * @param word the word being matched
+		 * @param found the number of times a matching word appears in the text file
 		 */
-		private void update(String word) {
-			matches += map.get(word).get(location).size();
-			score = (double) matches / (double) wordCount.get(location);
+		public void update(int found) {
+			matches += found;
+			score = (double) matches / (double) wordCount;
 		}
 		
 		@Override
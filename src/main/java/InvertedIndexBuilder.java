@@ -1,12 +1,14 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * Builds Inverted Index
@@ -15,17 +17,23 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
  *
  */
 public class InvertedIndexBuilder {
+	/** The smallest file that is read through a memory map instead of line by line. */
+	public static final long MAPPED_THRESHOLD = 1 << 20;
+	
+	/** The largest part of a file that is mapped into memory at once. */
+	public static final int MAPPED_WINDOW = 1 << 28;
+	
 	/**
 	 * The inverted index to build
 	 */
-	private final InvertedIndex invertedIndex;
+	private final WritableInvertedIndexInterface invertedIndex;
 	
 	/**
 	 * Constructor
 	 * 
 	 * @param invertedIndex the inverted index
 	 */
-	public InvertedIndexBuilder(InvertedIndex invertedIndex) {
+	public InvertedIndexBuilder(WritableInvertedIndexInterface invertedIndex) {
 		this.invertedIndex = invertedIndex;
 	}
 	
@@ -50,13 +58,38 @@ public class InvertedIndexBuilder {
 	}
 	
 	/**
-	 * Calls addData(path, invertedIndex) function
+	 * Calls addData(path, invertedIndex) function on a local inverted index, then
+	 * merges it into the inverted index being built
 	 * 
 	 * @param path the path of the file
 	 * @throws IOException if an IO error occurs
 	 */
 	public void addData(Path path) throws IOException {
-		 addData(path, this.invertedIndex);
+		InvertedIndex local = new InvertedIndex();
+		addData(path, local);
+		this.invertedIndex.addAll(local);
+	}
+	
+	/**
+	 * Parses a file into cleaned and stemmed words, then adds word, location,
+	 * and position to inverted index. Files of at least
+	 * {@link #MAPPED_THRESHOLD} bytes are read through a memory map, and
+	 * smaller files line by line. Both give the same words and positions.
+	 * 
+	 * @param path the path of the file
+	 * @param invertedIndex the inverted index to build
+	 * @throws IOException if an IO error occurs
+	 * 
+	 * @see #addLines(Path, InvertedIndex)
+	 * @see #addMapped(Path, InvertedIndex)
+	 */
+	public static void addData(Path path, InvertedIndex invertedIndex) throws IOException {
+		if (Files.size(path) >= MAPPED_THRESHOLD) {
+			addMapped(path, invertedIndex);
+		}
+		else {
+			addLines(path, invertedIndex);
+		}
 	}
 	
 	/**
@@ -67,20 +100,126 @@ public class InvertedIndexBuilder {
 	 * @param invertedIndex the inverted index to build
 	 * @throws IOException if an IO error occurs
 	 */
-	public static void addData(Path path, InvertedIndex invertedIndex) throws IOException {
+	public static void addLines(Path path, InvertedIndex invertedIndex) throws IOException {
 		//open file for reading
 		try (BufferedReader read = Files.newBufferedReader(path, StandardCharsets.UTF_8);) {
 			int position = 1; //position start at index 1
-			Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+			Stemmer stemmer = CachingStemmer.shared();
 			String line = null;
 			String location = path.toString();
+			TextTokenizer tokenizer = new TextTokenizer();
 			while ((line = read.readLine()) != null) {
-				for (String word : TextParser.parse(line)) {
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
 					//add to inverted index
-					invertedIndex.add(stemmer.stem(word).toString(), location, position);
+					invertedIndex.add(stemmer.stem(tokenizer.token()).toString(), location, position);
 					position++;
 				}
 			}
 		}
+		//the document is complete, so its posting lists can be compacted
+		invertedIndex.seal();
+	}
+	
+	/**
+	 * Maps a file into memory and parses the bytes of each line into cleaned and
+	 * stemmed words, then adds word, location, and position to inverted index.
+	 * ASCII lines are split without creating any strings, and other lines are
+	 * decoded as UTF-8 first, so the words and positions are the same as
+	 * {@link #addLines(Path, InvertedIndex)}.
+	 * 
+	 * @param path the path of the file
+	 * @param invertedIndex the inverted index to build
+	 * @throws IOException if an IO error occurs or the file is not valid UTF-8
+	 */
+	public static void addMapped(Path path, InvertedIndex invertedIndex) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			addMapped(channel, 0, channel.size(), false, path.toString(), 1, invertedIndex);
+		}
+		//the document is complete, so its posting lists can be compacted
+		invertedIndex.seal();
+	}
+	
+	/**
+	 * Maps part of a file into memory one window at a time and adds the stemmed
+	 * words of each line to the inverted index. A window ends after its last
+	 * line break, so lines are never split, unless a single line is longer than
+	 * a window. That line is split after its last whitespace instead, which does
+	 * not change its words.
+	 * 
+	 * @param channel the open file
+	 * @param start the index of the first byte to parse
+	 * @param end the index after the last byte to parse
+	 * @param continued whether the first byte continues a line that started earlier
+	 * @param location the location of the words
+	 * @param position the position of the first word
+	 * @param invertedIndex the inverted index to build
+	 * @return the position after the last word
+	 * @throws IOException if an IO error occurs or the bytes are not valid UTF-8
+	 */
+	static int addMapped(FileChannel channel, long start, long end, boolean continued, String location,
+			int position, InvertedIndex invertedIndex) throws IOException {
+		Stemmer stemmer = CachingStemmer.shared();
+		TextTokenizer tokenizer = new TextTokenizer();
+		long offset = start;
+		while (offset < end) {
+			int length = (int) Math.min(end - offset, MAPPED_WINDOW);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			int last = offset + length == end ? length : lastBreak(buffer, length);
+			int from = 0;
+			while (from < last) {
+				int to = from;
+				while (to < last && !isLineBreak(buffer.get(to))) {
+					to++;
+				}
+				tokenizer.reset(buffer, from, to, continued);
+				while (tokenizer.next()) {
+					//add to inverted index
+					invertedIndex.add(stemmer.stem(tokenizer.token()).toString(), location, position);
+					position++;
+				}
+				continued = false;
+				from = to + 1;
+			}
+			continued = !isLineBreak(buffer.get(last - 1));
+			offset += last;
+		}
+		return position;
+	}
+	
+	/**
+	 * Finds where a window of bytes that is not the end of the file should end,
+	 * which is after its last line break, or after its last whitespace if the
+	 * whole window is part of one line.
+	 * 
+	 * @param buffer the window of bytes
+	 * @param length the number of bytes in the window
+	 * @return the number of bytes to parse in this window
+	 * @throws IOException if the window has no line break or whitespace
+	 */
+	private static int lastBreak(ByteBuffer buffer, int length) throws IOException {
+		for (int i = length - 1; i >= 0; i--) {
+			if (isLineBreak(buffer.get(i))) {
+				return i + 1;
+			}
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			byte b = buffer.get(i);
+			if (b == ' ' || b == '\t' || b == 0x0B || b == '\f') {
+				return i + 1;
+			}
+		}
+		throw new IOException("Unable to find whitespace in " + length + " bytes.");
+	}
+	
+	/**
+	 * Checks whether a byte ends a line the same way as
+	 * {@link BufferedReader#readLine()}.
+	 * 
+	 * @param b the byte to check
+	 * @return true if the byte is a line feed or carriage return
+	 */
+	private static boolean isLineBreak(byte b) {
+		return b == '\n' || b == '\r';
 	}
-}
\ No newline at end of file
+}
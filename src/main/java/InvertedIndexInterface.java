@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * The shared interface implemented by the versions of the inverted index that
+ * can be searched and read, whether they are still being built or read-only.
+ * It only reads the index, so read-only indexes implement all of it. Indexes
+ * that are still being built implement {@link WritableInvertedIndexInterface}.
+ *
+ * @author Charles Sy
+ *
+ */
+public interface InvertedIndexInterface extends SearchableIndexInterface {
+
+	/**
+	 * Returns the number of words stored in the index.
+	 *
+	 * @return 0 if the index is empty, otherwise the number of contents in the
+	 *         index
+	 */
+	public int size();
+
+	/**
+	 * Returns the number of locations the word was found in.
+	 *
+	 * @param word the word to lookup
+	 * @return -1 if the word is not in the index, otherwise the number of
+	 *         locations stored for that word
+	 */
+	public int size(String word);
+
+	/**
+	 * Returns the number of positions found from the location the word was found in.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location to lookup
+	 * @return -1 if the location is not stored for the word, otherwise the number
+	 *         of positions stored for that location
+	 */
+	public int size(String word, String location);
+
+	/**
+	 * Determines whether the word is stored in the index.
+	 *
+	 * @param word the word to lookup
+	 * @return {@code true} if the word is stored in the index
+	 */
+	public boolean contains(String word);
+
+	/**
+	 * Determines whether the word is stored in the index and the location is
+	 * stored for that word.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location in that word to lookup
+	 * @return {@code true} if the location and word is stored in the index
+	 */
+	public boolean contains(String word, String location);
+
+	/**
+	 * Determines whether the word is stored in the index, the location is
+	 * stored for that word, and the position is stored for that location
+	 *
+	 * @param word the word to lookup
+	 * @param location the location in that word to lookup
+	 * @param position the position in that location where the word was found to lookup
+	 * @return {@code true} if the position, location and word is stored in the index
+	 */
+	public boolean contains(String word, String location, Integer position);
+
+	/**
+	 * Returns an unmodifiable view of the words stored in the index.
+	 *
+	 * @return an unmodifiable view of the words stored in the index
+	 */
+	public Collection<String> get();
+
+	/**
+	 * Returns an unmodifiable collection of the locations stored in the index for
+	 * the provided word in sorted order, or an empty collection if the word is
+	 * not in the index.
+	 *
+	 * @param word the word to lookup
+	 * @return an unmodifiable collection of the locations stored for the word
+	 */
+	public Collection<String> get(String word);
+
+	/**
+	 * Returns an unmodifiable collection of the positions stored in the index for
+	 * the provided location where the word is found, or an empty collection if
+	 * the location is not stored for the word.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location to lookup
+	 * @return an unmodifiable collection of the positions
+	 */
+	public Collection<Integer> get(String word, String location);
+
+	/**
+	 * Writes the inverted index as pretty JSON.
+	 *
+	 * @param path the path given by user or default path if otherwise
+	 * @throws IOException if an IO error occurs
+	 */
+	public void toJsonInvertedIndex(Path path) throws IOException;
+
+	/**
+	 * Writes the word count of every location as pretty JSON.
+	 *
+	 * @param path the path given by user or default path if otherwise
+	 * @throws IOException if an IO error occurs
+	 */
+	public void toJsonObject(Path path) throws IOException;
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares the time {@link SimpleJsonWriter} and {@link FastJsonWriter} take to
+ * write the same output. Builds the index of the -text path, searches every
+ * line of the optional -query file, and then writes the inverted index, word
+ * counts, and search results with each writer -rounds times (10 by default)
+ * after a warm up round. The outputs are first checked to be identical.
+ *
+ * @author Charles Sy
+ *
+ */
+public class JsonBenchmark {
+	/**
+	 * Writes one of the outputs with either writer.
+	 */
+	private interface Output {
+		/**
+		 * Writes the output.
+		 *
+		 * @param writer the writer to use
+		 * @param fast whether to use the fast writer
+		 * @throws IOException if an IO error occurs
+		 */
+		public void write(Writer writer, boolean fast) throws IOException;
+	}
+
+	/**
+	 * Runs the benchmark based on the provided command-line arguments.
+	 *
+	 * @param args flag/value pairs used to start this program
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		ArgumentMap map = new ArgumentMap(args);
+		if (!map.hasValue("-text")) {
+			System.out.println("Usage: JsonBenchmark -text path [-query path] [-rounds count]");
+			return;
+		}
+		int rounds = map.getInteger("-rounds", 10);
+		InvertedIndex index = new InvertedIndex();
+		new InvertedIndexBuilder(index).add(map.getPath("-text"));
+		FrozenInvertedIndex frozen = index.freeze();
+
+		Map<String, List<InvertedIndex.SingleSearchResult>> results = new TreeMap<>();
+		if (map.hasValue("-query")) {
+			for (String line : Files.readAllLines(map.getPath("-query"), StandardCharsets.UTF_8)) {
+				TreeSet<String> set = TextFileStemmer.uniqueStems(line);
+				if (!set.isEmpty()) {
+					results.putIfAbsent(String.join(" ", set), frozen.search(set, false, 0));
+				}
+			}
+		}
+
+		Map<String, Output> outputs = new TreeMap<>();
+		outputs.put("index", (writer, fast) -> {
+			if (fast) {
+				FastJsonWriter json = new FastJsonWriter(writer);
+				json.asNested(index.postings(), 0);
+				json.flush();
+			}
+			else {
+				SimpleJsonWriter.asNested(index.postings(), writer, 0);
+			}
+		});
+		outputs.put("counts", (writer, fast) -> {
+			if (fast) {
+				FastJsonWriter json = new FastJsonWriter(writer);
+				json.asObject(index.counts(), 0);
+				json.flush();
+			}
+			else {
+				SimpleJsonWriter.asObject(index.counts(), writer, 0);
+			}
+		});
+		outputs.put("results", (writer, fast) -> {
+			if (fast) {
+				FastJsonWriter json = new FastJsonWriter(writer);
+				json.asNestedResult(results, 0);
+				json.flush();
+			}
+			else {
+				SimpleJsonWriter.asNestedResult(results, writer, 0);
+			}
+		});
+
+		for (var entry : outputs.entrySet()) {
+			StringWriter simple = new StringWriter();
+			StringWriter fast = new StringWriter();
+			entry.getValue().write(simple, false);
+			entry.getValue().write(fast, true);
+			if (!simple.toString().equals(fast.toString())) {
+				System.out.println("Error: The writers produced different " + entry.getKey() + " output.");
+				return;
+			}
+
+			double before = time(entry.getValue(), false, rounds);
+			double after = time(entry.getValue(), true, rounds);
+			System.out.printf("%-8s chars: %10d  simple: %8.3f ms  fast: %8.3f ms  speedup: %5.2fx%n",
+					entry.getKey(), simple.getBuffer().length(), before, after, before / after);
+		}
+	}
+
+	/**
+	 * Writes the output to a writer that discards everything, once to warm up
+	 * and then the given number of times.
+	 *
+	 * @param output the output to write
+	 * @param fast whether to use the fast writer
+	 * @param rounds the number of timed rounds
+	 * @return the average time of a round in milliseconds
+	 * @throws IOException if an IO error occurs
+	 */
+	private static double time(Output output, boolean fast, int rounds) throws IOException {
+		output.write(Writer.nullWriter(), fast);
+		Instant start = Instant.now();
+		for (int i = 0; i < rounds; i++) {
+			output.write(Writer.nullWriter(), fast);
+		}
+		Duration elapsed = Duration.between(start, Instant.now());
+		return (double) elapsed.toNanos() / Duration.ofMillis(1).toNanos() / Math.max(1, rounds);
+	}
+}
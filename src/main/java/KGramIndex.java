@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A character k-gram index over a sorted array of words, used to narrow down
+ * the candidate words of wildcard patterns and misspelled words without
+ * scanning the whole vocabulary. Every word is padded with {@code $} on both
+ * sides, so the first and last characters also form k-grams, and each k-gram
+ * maps to the sorted indexes of the words containing it. Candidates are always
+ * verified against the pattern or edit distance, so the index only needs to
+ * never miss a match.
+ *
+ * Since nothing is modified after construction, this class is thread-safe.
+ *
+ * @author Charles Sy
+ *
+ */
+public class KGramIndex {
+	/** The default length of each k-gram. */
+	public static final int DEFAULT_K = 2;
+
+	/** The character marking the start and end of a word. */
+	public static final char BOUNDARY = '$';
+
+	/** The character matching any number of characters in a wildcard pattern. */
+	public static final char WILDCARD = '*';
+
+	/**
+	 * The sorted words
+	 */
+	private final String[] terms;
+
+	/**
+	 * The length of each k-gram
+	 */
+	private final int k;
+
+	/**
+	 * Maps each k-gram to the sorted indexes of the words containing it
+	 */
+	private final Map<String, int[]> grams;
+
+	/**
+	 * Constructor with the default k-gram length
+	 *
+	 * @param terms the sorted words
+	 */
+	public KGramIndex(String[] terms) {
+		this(terms, DEFAULT_K);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param terms the sorted words
+	 * @param k the length of each k-gram; should be at least 2
+	 */
+	public KGramIndex(String[] terms, int k) {
+		this.terms = terms;
+		this.k = Math.max(2, k);
+
+		Map<String, int[]> lists = new HashMap<>();
+		Map<String, Integer> sizes = new HashMap<>();
+		for (int term = 0; term < terms.length; term++) {
+			for (String gram : grams(BOUNDARY + terms[term] + BOUNDARY)) {
+				int[] list = lists.get(gram);
+				int size = sizes.getOrDefault(gram, 0);
+				if (list == null) {
+					list = new int[4];
+				}
+				else if (size == list.length) {
+					list = Arrays.copyOf(list, size * 2);
+				}
+				list[size] = term;
+				lists.put(gram, list);
+				sizes.put(gram, size + 1);
+			}
+		}
+		this.grams = new HashMap<>();
+		for (var entry : lists.entrySet()) {
+			grams.put(entry.getKey(), Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey())));
+		}
+	}
+
+	/**
+	 * Returns the distinct k-grams of the text in order of first appearance.
+	 *
+	 * @param text the text to split
+	 * @return the distinct k-grams, or an empty set if the text is too short
+	 */
+	private Set<String> grams(String text) {
+		return grams(text, k);
+	}
+
+	/**
+	 * Returns the distinct k-grams of the text in order of first appearance.
+	 *
+	 * @param text the text to split
+	 * @param k the length of each k-gram
+	 * @return the distinct k-grams, or an empty set if the text is too short
+	 */
+	public static Set<String> grams(String text, int k) {
+		Set<String> found = new LinkedHashSet<>();
+		for (int i = 0; i + k <= text.length(); i++) {
+			found.add(text.substring(i, i + k));
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the sorted indexes of the words matching a wildcard pattern, where
+	 * {@code *} matches any number of characters and every other character
+	 * matches itself.
+	 *
+	 * @param pattern the wildcard pattern
+	 * @return the sorted indexes of the matching words
+	 */
+	public int[] wildcard(String pattern) {
+		// every k-gram of the literal pieces between wildcards must appear in a match
+		int[] candidates = null;
+		for (String piece : (BOUNDARY + pattern + BOUNDARY).split("\\" + WILDCARD)) {
+			for (String gram : grams(piece)) {
+				int[] list = grams.get(gram);
+				if (list == null) {
+					return new int[0];
+				}
+				candidates = candidates == null ? list : intersect(candidates, list);
+			}
+		}
+
+		int[] found = new int[candidates == null ? terms.length : candidates.length];
+		int size = 0;
+		for (int i = 0; i < found.length; i++) {
+			int term = candidates == null ? i : candidates[i];
+			if (matches(terms[term], pattern)) {
+				found[size++] = term;
+			}
+		}
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * Returns the sorted indexes of the words within an edit distance of the
+	 * word. A single edit changes at most k of the word's k-grams, so a match
+	 * must share all but {@code k * distance} of them, and only words passing
+	 * that filter are compared character by character.
+	 *
+	 * @param word the word to lookup
+	 * @param distance the largest Levenshtein distance allowed
+	 * @return the sorted indexes of the matching words
+	 */
+	public int[] fuzzy(String word, int distance) {
+		Set<String> wanted = grams(BOUNDARY + word + BOUNDARY);
+		int threshold = wanted.size() - k * distance;
+
+		List<Integer> candidates = new ArrayList<>();
+		if (threshold <= 0) {
+			// too short to filter by k-grams, so only filter by length
+			for (int term = 0; term < terms.length; term++) {
+				candidates.add(term);
+			}
+		}
+		else {
+			int[] shared = new int[terms.length];
+			for (String gram : wanted) {
+				int[] list = grams.get(gram);
+				if (list != null) {
+					for (int term : list) {
+						if (++shared[term] == threshold) {
+							candidates.add(term);
+						}
+					}
+				}
+			}
+		}
+
+		int[] found = new int[candidates.size()];
+		int size = 0;
+		for (int term : candidates) {
+			if (Math.abs(terms[term].length() - word.length()) <= distance
+					&& distance(terms[term], word, distance) <= distance) {
+				found[size++] = term;
+			}
+		}
+		found = Arrays.copyOf(found, size);
+		Arrays.sort(found);
+		return found;
+	}
+
+	/**
+	 * Returns the sorted indexes found in both sorted arrays.
+	 *
+	 * @param first the first sorted array
+	 * @param second the second sorted array
+	 * @return the sorted intersection
+	 */
+	private static int[] intersect(int[] first, int[] second) {
+		int[] found = new int[Math.min(first.length, second.length)];
+		int i = 0, j = 0, size = 0;
+		while (i < first.length && j < second.length) {
+			if (first[i] < second[j]) {
+				i++;
+			}
+			else if (first[i] > second[j]) {
+				j++;
+			}
+			else {
+				found[size++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(found, size);
+	}
+
+	/**
+	 * Determines whether the word matches the wildcard pattern, backtracking to
+	 * the last wildcard on a mismatch.
+	 *
+	 * @param word the word to check
+	 * @param pattern the wildcard pattern
+	 * @return {@code true} if the word matches the pattern
+	 */
+	public static boolean matches(String word, String pattern) {
+		int w = 0, p = 0;
+		int star = -1, resume = 0;
+		while (w < word.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+				star = p++;
+				resume = w;
+			}
+			else if (p < pattern.length() && pattern.charAt(p) == word.charAt(w)) {
+				p++;
+				w++;
+			}
+			else if (star >= 0) {
+				p = star + 1;
+				w = ++resume;
+			}
+			else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+			p++;
+		}
+		return p == pattern.length();
+	}
+
+	/**
+	 * Returns the Levenshtein distance between two words, stopping early once
+	 * every path exceeds the limit.
+	 *
+	 * @param first the first word
+	 * @param second the second word
+	 * @param limit the largest distance of interest
+	 * @return the distance, or {@code limit + 1} if it is larger than the limit
+	 */
+	public static int distance(String first, String second, int limit) {
+		int[] previous = new int[second.length() + 1];
+		int[] current = new int[second.length() + 1];
+		for (int j = 0; j <= second.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= first.length(); i++) {
+			current[0] = i;
+			int smallest = current[0];
+			for (int j = 1; j <= second.length(); j++) {
+				int substitution = previous[j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+				smallest = Math.min(smallest, current[j]);
+			}
+			if (smallest > limit) {
+				return limit + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[second.length()], limit + 1);
+	}
+}
@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe inverted index without any locks. Words and locations are kept
+ * in concurrent skip lists, so the sorted prefix walk used by partial search
+ * still works, and posting lists are sealed before they are published and
+ * never modified afterwards. Adding the same word and location again replaces
+ * the posting list with a new merged one instead of changing it.
+ *
+ * Readers and writers never block each other, but reads are only weakly
+ * consistent: a search running during {@link #addAll(InvertedIndex)} may see
+ * some of the words of a document and not others. The word count of a location
+ * is always updated before any of its postings are published.
+ *
+ * @author Charles Sy
+ *
+ */
+public class LockFreeInvertedIndex implements WritableInvertedIndexInterface {
+	/**
+	 * Maps each word to its locations, which map to the sealed positions
+	 */
+	private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, PostingList>> map;
+
+	/**
+	 * The word count of each location
+	 */
+	private final ConcurrentHashMap<String, Integer> counts;
+
+	/**
+	 * Incremented after every merge
+	 */
+	private final AtomicLong version;
+
+	/**
+	 * The k-gram index of the words, updated as new words are added
+	 */
+	private final ConcurrentKGramIndex kgrams;
+
+	/**
+	 * Constructor initializes an empty index
+	 */
+	public LockFreeInvertedIndex() {
+		this.map = new ConcurrentSkipListMap<>();
+		this.counts = new ConcurrentHashMap<>();
+		this.version = new AtomicLong();
+		this.kgrams = new ConcurrentKGramIndex();
+	}
+
+	@Override
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * Merges the other inverted index without locking. The posting lists of the
+	 * other index are sealed and shared, so the other index should not be added
+	 * to afterwards.
+	 *
+	 * @param other the other inverted index
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		other.seal();
+		// publish the word counts first so searches never find a location without one
+		for (Entry<String, Integer> entry : other.counts().entrySet()) {
+			counts.merge(entry.getKey(), entry.getValue(), Math::max);
+		}
+		for (Entry<String, Map<String, PostingList>> entry : other.postings().entrySet()) {
+			ConcurrentSkipListMap<String, PostingList> locations =
+					map.computeIfAbsent(entry.getKey(), this::newWord);
+			for (Entry<String, PostingList> posting : entry.getValue().entrySet()) {
+				locations.merge(posting.getKey(), posting.getValue(), LockFreeInvertedIndex::union);
+			}
+		}
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Creates the locations of a word that is not in the index yet, adding the
+	 * word to the k-gram index. May be called more than once for the same word
+	 * if another thread adds it at the same time.
+	 *
+	 * @param word the new word
+	 * @return the empty locations of the word
+	 */
+	private ConcurrentSkipListMap<String, PostingList> newWord(String word) {
+		kgrams.add(word);
+		return new ConcurrentSkipListMap<>();
+	}
+
+	/**
+	 * Returns a new sealed posting list holding the positions of both lists,
+	 * without modifying either one. May be called more than once for the same
+	 * pair if another thread merges at the same time.
+	 *
+	 * @param first the first posting list
+	 * @param second the second posting list
+	 * @return the merged posting list
+	 */
+	private static PostingList union(PostingList first, PostingList second) {
+		PostingList merged = new PostingList();
+		merged.addAll(first);
+		merged.addAll(second);
+		merged.seal();
+		return merged;
+	}
+
+	/**
+	 * Returns the positions of the word in the location.
+	 *
+	 * @param word the word to lookup
+	 * @param location the location to lookup
+	 * @return the positions, or {@code null} if the location is not stored for the word
+	 */
+	private PostingList positions(String word, String location) {
+		ConcurrentSkipListMap<String, PostingList> locations = map.get(word);
+		return locations == null ? null : locations.get(location);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public int size(String word) {
+		ConcurrentSkipListMap<String, PostingList> locations = map.get(word);
+		return locations == null ? -1 : locations.size();
+	}
+
+	@Override
+	public int size(String word, String location) {
+		PostingList positions = positions(word, location);
+		return positions == null ? -1 : positions.size();
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return map.containsKey(word);
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return positions(word, location) != null;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		PostingList positions = positions(word, location);
+		return positions != null && positions.contains(position.intValue());
+	}
+
+	@Override
+	public Collection<String> get() {
+		return Collections.unmodifiableSet(map.keySet());
+	}
+
+	@Override
+	public Collection<String> get(String word) {
+		ConcurrentSkipListMap<String, PostingList> locations = map.get(word);
+		if (locations != null) {
+			return Collections.unmodifiableSet(locations.keySet());
+		}
+		return Collections.emptySet();
+	}
+
+	@Override
+	public Collection<Integer> get(String word, String location) {
+		PostingList positions = positions(word, location);
+		if (positions != null) {
+			return Collections.unmodifiableCollection(positions);
+		}
+		return Collections.emptySet();
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		Map<String, InvertedIndex.SingleSearchResult> check = new HashMap<>();
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (String word : queries) {
+			ConcurrentSkipListMap<String, PostingList> locations = map.get(word);
+			if (locations != null) {
+				searchHelper(check, list, locations);
+			}
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		Map<String, InvertedIndex.SingleSearchResult> check = new HashMap<>();
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (String query : queries) {
+			for (var entry : map.tailMap(query).entrySet()) {
+				if (!entry.getKey().startsWith(query)) {
+					break;
+				}
+				searchHelper(check, list, entry.getValue());
+			}
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Performs a wildcard search by finding the matching words in the k-gram
+	 * index, which is updated as new words are added, and searching for them
+	 * exactly.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return search(kgrams.wildcard(queries), true, k);
+	}
+
+	/**
+	 * Performs a fuzzy search by finding the similar words in the k-gram index,
+	 * then searching for them exactly.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return search(kgrams.fuzzy(queries, distance), true, k);
+	}
+
+	/**
+	 * Helper method that adds or updates the results for every location of a word.
+	 *
+	 * @param check the results added so far by location
+	 * @param list the unsorted results added so far
+	 * @param locations the locations of the word
+	 */
+	private void searchHelper(Map<String, InvertedIndex.SingleSearchResult> check,
+			List<InvertedIndex.SingleSearchResult> list, ConcurrentSkipListMap<String, PostingList> locations) {
+		for (Entry<String, PostingList> entry : locations.entrySet()) {
+			InvertedIndex.SingleSearchResult result = check.get(entry.getKey());
+			if (result == null) {
+				result = new InvertedIndex.SingleSearchResult(entry.getKey(), counts.get(entry.getKey()));
+				check.put(entry.getKey(), result);
+				list.add(result);
+			}
+			result.update(entry.getValue().size());
+		}
+	}
+
+	/**
+	 * Copies the index into a read-only snapshot. Locations added while copying
+	 * may be left out, but every location in the snapshot has its word count.
+	 *
+	 * @return the frozen inverted index
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		// the word counts are taken first, so later locations are skipped below
+		TreeMap<String, Integer> documents = new TreeMap<>(counts);
+		String[] locations = documents.keySet().toArray(new String[0]);
+		int[] frozenCounts = new int[locations.length];
+		Map<String, Integer> rank = new HashMap<>();
+		for (int i = 0; i < locations.length; i++) {
+			frozenCounts[i] = documents.get(locations[i]);
+			rank.put(locations[i], i);
+		}
+
+		// take a stable copy of every posting, then size and fill the flat arrays
+		List<String> terms = new ArrayList<>();
+		List<List<Entry<String, PostingList>>> snapshot = new ArrayList<>();
+		int postings = 0;
+		int total = 0;
+		for (var entry : map.entrySet()) {
+			List<Entry<String, PostingList>> found = new ArrayList<>();
+			for (Entry<String, PostingList> posting : entry.getValue().entrySet()) {
+				if (rank.containsKey(posting.getKey())) {
+					found.add(posting);
+					total += posting.getValue().size();
+				}
+			}
+			if (!found.isEmpty()) {
+				terms.add(entry.getKey());
+				snapshot.add(found);
+				postings += found.size();
+			}
+		}
+
+		int[] termOffsets = new int[terms.size() + 1];
+		int[] frozenDocuments = new int[postings];
+		int[] positionOffsets = new int[postings + 1];
+		int[] positions = new int[total];
+		int posting = 0;
+		int position = 0;
+		for (int term = 0; term < snapshot.size(); term++) {
+			termOffsets[term] = posting;
+			// locations are sorted, so the document IDs are already in order
+			for (Entry<String, PostingList> entry : snapshot.get(term)) {
+				frozenDocuments[posting] = rank.get(entry.getKey());
+				positionOffsets[posting++] = position;
+				int[] found = entry.getValue().toIntArray();
+				System.arraycopy(found, 0, positions, position, found.length);
+				position += found.length;
+			}
+		}
+		termOffsets[terms.size()] = posting;
+		positionOffsets[posting] = position;
+		return new FrozenInvertedIndex(terms.toArray(new String[0]), termOffsets, frozenDocuments,
+				positionOffsets, positions, locations, frozenCounts);
+	}
+
+	@Override
+	public void toJsonInvertedIndex(Path path) throws IOException {
+		SimpleJsonWriter.asNested(map, path);
+	}
+
+	@Override
+	public void toJsonObject(Path path) throws IOException {
+		SimpleJsonWriter.asObject(new TreeMap<>(counts), path);
+	}
+
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * The default scorer, which ranks documents by the percent of their words that
+ * match the query.
+ *
+ * @author Charles Sy
+ *
+ */
+public class MatchScorer implements ScorerInterface {
+	/**
+	 * The index being scored
+	 */
+	private final FrozenInvertedIndex index;
+
+	/**
+	 * Constructor
+	 *
+	 * @param index the index being scored
+	 */
+	public MatchScorer(FrozenInvertedIndex index) {
+		this.index = index;
+	}
+
+	@Override
+	public double score(int term, int document, int frequency) {
+		return (double) frequency / (double) index.count(document);
+	}
+
+	/**
+	 * Divides the total matches once instead of adding up the score of each
+	 * word, so results match the score of a single search result exactly.
+	 */
+	@Override
+	public double total(int document, int matches, double sum) {
+		return (double) matches / (double) index.count(document);
+	}
+
+	@Override
+	public boolean countsOnly() {
+		return true;
+	}
+
+	@Override
+	public boolean comparable() {
+		return true;
+	}
+}
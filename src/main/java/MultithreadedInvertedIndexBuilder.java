@@ -1,14 +1,29 @@
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * The thread safe and multithreaded inverted index builder.
+ * The thread safe and multithreaded inverted index builder. Each file is
+ * indexed by its own task, except files larger than the chunk size, which are
+ * split into parts of about that size so several workers share a single large
+ * file. Every position of a part is moved after the words of the earlier
+ * parts, and once the last part is done the posting lists of each word are
+ * built from all of the parts at once, so the result is the same as indexing
+ * the file in one piece.
  * 
  * @author Charles Sy
  *
  */
 public class MultithreadedInvertedIndexBuilder extends InvertedIndexBuilder {
+	/** The default size in bytes of the parts a large file is split into. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 26;
 	
 	/**
 	 * The work queue
@@ -18,7 +33,12 @@ public class MultithreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 	/**
 	 * The thread safe inverted index
 	 */
-	private final ConcurrentInvertedIndex invertedIndex;
+	private final WritableInvertedIndexInterface invertedIndex;
+	
+	/**
+	 * The size in bytes of the parts a large file is split into
+	 */
+	private final int chunkSize;
 	
 	/**
 	 * Constructor
@@ -26,10 +46,22 @@ public class MultithreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 	 * @param invertedIndex the thread safe inverted index
 	 * @param queue the work queue
 	 */
-	public MultithreadedInvertedIndexBuilder(ConcurrentInvertedIndex invertedIndex, WorkQueue queue) {
+	public MultithreadedInvertedIndexBuilder(WritableInvertedIndexInterface invertedIndex, WorkQueue queue) {
+		this(invertedIndex, queue, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param invertedIndex the thread safe inverted index
+	 * @param queue the work queue
+	 * @param chunkSize the size in bytes of the parts a large file is split into
+	 */
+	public MultithreadedInvertedIndexBuilder(WritableInvertedIndexInterface invertedIndex, WorkQueue queue, int chunkSize) {
 		super(invertedIndex);
 		this.queue = queue;
 		this.invertedIndex = invertedIndex;
+		this.chunkSize = Math.max(1, chunkSize);
 	}
 	
 	@Override
@@ -44,10 +76,72 @@ public class MultithreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 	
 	@Override 
 	public void addData(Path path) throws IOException {
+		long size = Files.size(path);
+		if (size > chunkSize) {
+			addChunks(path, size);
+			return;
+		}
 		//creates first task, gives it to the work queue, and increments pending
 		queue.execute(new Task(path));
 	}
 	
+	/**
+	 * Splits a large file after the first line break at or past every multiple
+	 * of the chunk size, and gives each part to the work queue. Parts never
+	 * split a line, so a part may be larger than the chunk size.
+	 * 
+	 * @param path the path of the file
+	 * @param size the size of the file in bytes
+	 * @throws IOException if an IO error occurs
+	 */
+	private void addChunks(Path path, long size) throws IOException {
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			long end = lineEnd(channel, chunkSize, size, buffer);
+			while (end < size) {
+				bounds.add(end);
+				end = lineEnd(channel, end + chunkSize, size, buffer);
+			}
+		}
+		bounds.add(size);
+		
+		ChunkedFile file = new ChunkedFile(path.toString(), bounds.size() - 1);
+		for (int i = 0; i < bounds.size() - 1; i++) {
+			queue.execute(new ChunkTask(path, file, i, bounds.get(i), bounds.get(i + 1)));
+		}
+	}
+	
+	/**
+	 * Finds the start of the first line that begins at or after the offset.
+	 * 
+	 * @param channel the open file
+	 * @param offset the earliest start
+	 * @param size the size of the file in bytes
+	 * @param buffer the buffer to read into
+	 * @return the index after the first line break at or after offset - 1, or the size if there is none
+	 * @throws IOException if an IO error occurs
+	 */
+	private static long lineEnd(FileChannel channel, long offset, long size, ByteBuffer buffer) throws IOException {
+		long start = offset - 1;
+		while (start < size) {
+			buffer.clear();
+			int read = channel.read(buffer, start);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					return start + i + 1;
+				}
+			}
+			start += read;
+		}
+		return size;
+	}
+	
 	/**
 	 * The non-static task class that provides functionality to threads in the runnable state.
 	 * 
@@ -81,4 +175,142 @@ public class MultithreadedInvertedIndexBuilder extends InvertedIndexBuilder {
 			invertedIndex.addAll(local);
 		}
 	}
+	
+	/**
+	 * The parts of a large file that are done. Parts are moved in order, since
+	 * the position of every word depends on the number of words in the parts
+	 * before it, and they are only combined after the last one is done.
+	 * 
+	 * @author Charles Sy
+	 *
+	 */
+	private class ChunkedFile {
+		/**
+		 * The location of the words
+		 */
+		private final String location;
+		
+		/**
+		 * The index of each part that is done
+		 */
+		private final InvertedIndex[] done;
+		
+		/**
+		 * The number of words in each part
+		 */
+		private final int[] counts;
+		
+		/**
+		 * The number of the next part to move
+		 */
+		private int next;
+		
+		/**
+		 * The number of words in the moved parts
+		 */
+		private int words;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param location the location of the words
+		 * @param parts the number of parts
+		 */
+		public ChunkedFile(String location, int parts) {
+			this.location = location;
+			this.done = new InvertedIndex[parts];
+			this.counts = new int[parts];
+			this.next = 0;
+			this.words = 0;
+		}
+		
+		/**
+		 * Moves every part that is ready after the words of the parts before
+		 * it, and combines the parts and adds the whole file to the inverted
+		 * index after the last part.
+		 * 
+		 * @param part the number of the finished part
+		 * @param local the index of the part, starting at position 1
+		 * @param count the number of words in the part
+		 */
+		public void finish(int part, InvertedIndex local, int count) {
+			synchronized (this) {
+				done[part] = local;
+				counts[part] = count;
+				while (next < done.length && done[next] != null) {
+					done[next].shift(words);
+					words += counts[next];
+					next++;
+				}
+				if (next < done.length) {
+					return;
+				}
+			}
+			//add new data to inverted index
+			invertedIndex.addAll(InvertedIndex.concat(Arrays.asList(done)));
+		}
+	}
+	
+	/**
+	 * The task that indexes one part of a large file.
+	 * 
+	 * @author Charles Sy
+	 *
+	 */
+	private class ChunkTask implements Runnable {
+		/**
+		 * The path of the file
+		 */
+		private final Path path;
+		
+		/**
+		 * The file this part belongs to
+		 */
+		private final ChunkedFile file;
+		
+		/**
+		 * The number of this part
+		 */
+		private final int part;
+		
+		/**
+		 * The index of the first byte of this part
+		 */
+		private final long start;
+		
+		/**
+		 * The index after the last byte of this part
+		 */
+		private final long end;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param path the path of the file
+		 * @param file the file this part belongs to
+		 * @param part the number of this part
+		 * @param start the index of the first byte of this part
+		 * @param end the index after the last byte of this part
+		 */
+		public ChunkTask(Path path, ChunkedFile file, int part, long start, long end) {
+			this.path = path;
+			this.file = file;
+			this.part = part;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		public void run() {
+			InvertedIndex local = new InvertedIndex();
+			int position;
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				position = InvertedIndexBuilder.addMapped(channel, start, end, false, file.location, 1, local);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			local.seal();
+			file.finish(part, local, position - 1);
+		}
+	}
 }
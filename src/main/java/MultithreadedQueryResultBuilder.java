@@ -31,23 +31,59 @@ public class MultithreadedQueryResultBuilder implements QueryResultBuilderInterf
 	/**
 	 * The thread-safe inverted index to search
 	 */
-	private final ConcurrentInvertedIndex invertedIndex;
+	private final SearchableIndexInterface invertedIndex;
 	
 	/**
 	 * Stores single search results
 	 */
 	private final Map<String, Collection<InvertedIndex.SingleSearchResult>> results;
 	
+	/**
+	 * The maximum number of results kept per query, or 0 for all of them
+	 */
+	private final int limit;
+	
+	/**
+	 * The cache of search results, which may be shared with other builders
+	 */
+	private final QueryCache cache;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param invertedIndex the thread-safe inverted index to search
+	 * @param queue the work queue for multithreading
+	 */
+	public MultithreadedQueryResultBuilder(SearchableIndexInterface invertedIndex, WorkQueue queue) {
+		this(invertedIndex, queue, 0);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param invertedIndex the thread-safe inverted index to search
+	 * @param queue the work queue for multithreading
+	 * @param limit the maximum number of results kept per query, or 0 for all of them
+	 */
+	public MultithreadedQueryResultBuilder(SearchableIndexInterface invertedIndex, WorkQueue queue, int limit) {
+		this(invertedIndex, queue, limit, new QueryCache(0, 0));
+	}
+	
 	/**
 	 * Constructor
 	 * 
-	 * @param invertedIndex the multithreaded and thread-safe inverted index
+	 * @param invertedIndex the thread-safe inverted index to search
 	 * @param queue the work queue for multithreading
+	 * @param limit the maximum number of results kept per query, or 0 for all of them
+	 * @param cache the cache of search results
 	 */
-	public MultithreadedQueryResultBuilder(ConcurrentInvertedIndex invertedIndex, WorkQueue queue) {
+	public MultithreadedQueryResultBuilder(SearchableIndexInterface invertedIndex, WorkQueue queue, int limit,
+			QueryCache cache) {
 		this.queue = queue;
 		this.invertedIndex = invertedIndex;
 		this.results = new TreeMap<>();
+		this.limit = limit;
+		this.cache = cache;
 	}
 	
 	@Override
@@ -109,7 +145,7 @@ public class MultithreadedQueryResultBuilder implements QueryResultBuilderInterf
 						return;
 					}
 				}
-				List<InvertedIndex.SingleSearchResult> list = invertedIndex.search(query, exact);
+				List<InvertedIndex.SingleSearchResult> list = cache.search(invertedIndex, query, exact, limit);
 				synchronized (results) {
 					results.put(cleaned, list);
 				}
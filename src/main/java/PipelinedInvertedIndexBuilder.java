@@ -0,0 +1,635 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * Builds the inverted index with a pipeline of four stages instead of one task
+ * per file: reading lines, splitting them into words, stemming the words, and
+ * adding them to the index. Each stage has its own threads and takes batches
+ * from a bounded queue, so disk and CPU work overlap, and a stage that falls
+ * behind makes the stages before it wait instead of filling memory.
+ *
+ * Batches of the same file may finish stemming out of order, so the indexing
+ * stage puts them back in order before giving out positions, and adds each
+ * file to the inverted index once its last batch is done. The result is the
+ * same as {@link InvertedIndexBuilder}.
+ *
+ * Each stage counts its batches, items, busy time, time spent waiting for the
+ * next stage, and the depth of its input queue; see {@link #toString()}. The
+ * bottleneck is the stage that is busy all the time with a full input queue.
+ *
+ * @author Charles Sy
+ *
+ */
+public class PipelinedInvertedIndexBuilder extends InvertedIndexBuilder {
+	/** The default number of batches each queue holds. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** The number of characters of lines read into each batch. */
+	public static final int BATCH_CHARACTERS = 1 << 14;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * The thread safe inverted index
+	 */
+	private final WritableInvertedIndexInterface invertedIndex;
+
+	/**
+	 * The number of batches each queue holds
+	 */
+	private final int capacity;
+
+	/**
+	 * Tells the threads of the reading stage to stop
+	 */
+	private final Document finished;
+
+	/**
+	 * Reads the lines of each file
+	 */
+	private final Stage<Document> read;
+
+	/**
+	 * Splits the lines into words
+	 */
+	private final Stage<Batch> tokenize;
+
+	/**
+	 * Stems the words
+	 */
+	private final Stage<Batch> stem;
+
+	/**
+	 * Adds the stemmed words to the inverted index
+	 */
+	private final Stage<Batch> index;
+
+	/**
+	 * The first error of the current build, if any
+	 */
+	private final AtomicReference<Exception> error;
+
+	/**
+	 * Constructor with one thread per stage
+	 *
+	 * @param invertedIndex the thread safe inverted index
+	 */
+	public PipelinedInvertedIndexBuilder(WritableInvertedIndexInterface invertedIndex) {
+		this(invertedIndex, 1, 1, 1, 1, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param invertedIndex the thread safe inverted index
+	 * @param readers the number of threads reading files
+	 * @param tokenizers the number of threads splitting lines into words
+	 * @param stemmers the number of threads stemming words
+	 * @param indexers the number of threads adding words to the index
+	 * @param capacity the number of batches each queue holds
+	 */
+	public PipelinedInvertedIndexBuilder(WritableInvertedIndexInterface invertedIndex, int readers, int tokenizers,
+			int stemmers, int indexers, int capacity) {
+		super(invertedIndex);
+		this.invertedIndex = invertedIndex;
+		this.capacity = Math.max(1, capacity);
+		this.error = new AtomicReference<>();
+		this.finished = new Document(Path.of(""));
+		this.index = new Stage<>("index", "words", indexers, Batch.DONE, null) {
+			@Override
+			protected void process(Batch batch) {
+				count(batch.words.size());
+				batch.document.add(batch);
+			}
+		};
+		this.stem = new Stage<>("stem", "words", stemmers, Batch.DONE, index) {
+			@Override
+			protected void process(Batch batch) throws InterruptedException {
+				Stemmer stemmer = CachingStemmer.shared();
+				for (int i = 0; i < batch.words.size(); i++) {
+					batch.words.set(i, stemmer.stem(batch.words.get(i)).toString());
+				}
+				count(batch.words.size());
+				send(batch);
+			}
+		};
+		this.tokenize = new Stage<>("tokenize", "words", tokenizers, Batch.DONE, stem) {
+			/**
+			 * The tokenizer of each thread
+			 */
+			private final ThreadLocal<TextTokenizer> tokenizers = ThreadLocal.withInitial(TextTokenizer::new);
+
+			@Override
+			protected void process(Batch batch) throws InterruptedException {
+				TextTokenizer tokenizer = tokenizers.get();
+				batch.words = new ArrayList<>();
+				for (String line : batch.lines) {
+					tokenizer.reset(line);
+					while (tokenizer.next()) {
+						batch.words.add(tokenizer.token().toString());
+					}
+				}
+				batch.lines = null;
+				count(batch.words.size());
+				send(batch);
+			}
+		};
+		this.read = new Stage<>("read", "lines", readers, finished, tokenize) {
+			@Override
+			protected void process(Document document) throws IOException, InterruptedException {
+				try (BufferedReader reader = Files.newBufferedReader(document.path, StandardCharsets.UTF_8)) {
+					int sequence = 0;
+					int characters = 0;
+					List<String> lines = new ArrayList<>();
+					String line = null;
+					while ((line = reader.readLine()) != null) {
+						lines.add(line);
+						characters += line.length();
+						if (characters >= BATCH_CHARACTERS) {
+							count(lines.size());
+							send(new Batch(document, sequence++, lines, false));
+							lines = new ArrayList<>();
+							characters = 0;
+						}
+					}
+					count(lines.size());
+					send(new Batch(document, sequence, lines, true));
+				}
+			}
+		};
+	}
+
+	/**
+	 * Starts the threads of every stage, gives the stages every file found
+	 * at the path, and waits until every file is in the inverted index.
+	 *
+	 * @param path the path of the file or directory
+	 * @throws IOException if an IO error occurs in any stage
+	 */
+	@Override
+	public void add(Path path) throws IOException {
+		error.set(null);
+		List<Thread> threads = new ArrayList<>();
+		index.start(threads);
+		stem.start(threads);
+		tokenize.start(threads);
+		read.start(threads);
+		try {
+			super.add(path);
+		}
+		finally {
+			try {
+				read.finish();
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Thread thread : threads) {
+					thread.interrupt();
+				}
+				error.compareAndSet(null, e);
+			}
+			log.debug("Pipeline finished:\n{}", this);
+		}
+		Exception first = error.get();
+		if (first instanceof IOException) {
+			throw (IOException) first;
+		}
+		if (first != null) {
+			throw new IOException("Unable to build the inverted index.", first);
+		}
+	}
+
+	/**
+	 * Gives the file to the reading stage, waiting if its queue is full.
+	 *
+	 * @param path the path of the file
+	 * @throws IOException if interrupted while waiting
+	 */
+	@Override
+	public void addData(Path path) throws IOException {
+		try {
+			read.put(new Document(path));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while adding " + path, e);
+		}
+	}
+
+	/**
+	 * Returns the metrics of every stage, one per line.
+	 *
+	 * @return the metrics of every stage
+	 */
+	@Override
+	public String toString() {
+		return String.join("\n", read.toString(), tokenize.toString(), stem.toString(), index.toString());
+	}
+
+	/**
+	 * The words of a file that is being built, and the batches that arrived
+	 * before the batches that come before them.
+	 *
+	 * @author Charles Sy
+	 *
+	 */
+	private class Document {
+		/**
+		 * The path of the file
+		 */
+		private final Path path;
+
+		/**
+		 * The location of the words
+		 */
+		private final String location;
+
+		/**
+		 * The words of this file added so far
+		 */
+		private final InvertedIndex local;
+
+		/**
+		 * The batches waiting for an earlier batch, by sequence number
+		 */
+		private final Map<Integer, Batch> waiting;
+
+		/**
+		 * The sequence number of the next batch to add
+		 */
+		private int next;
+
+		/**
+		 * The position of the next word
+		 */
+		private int position;
+
+		/**
+		 * Constructor
+		 *
+		 * @param path the path of the file
+		 */
+		public Document(Path path) {
+			this.path = path;
+			this.location = path.toString();
+			this.local = new InvertedIndex();
+			this.waiting = new HashMap<>();
+			this.next = 0;
+			this.position = 1; //position start at index 1
+		}
+
+		/**
+		 * Adds the words of every batch that is next in order, and adds this
+		 * file to the inverted index after its last batch.
+		 *
+		 * @param batch the batch of stemmed words
+		 */
+		public void add(Batch batch) {
+			boolean complete = false;
+			synchronized (this) {
+				waiting.put(batch.sequence, batch);
+				Batch ready;
+				while ((ready = waiting.remove(next)) != null) {
+					for (String word : ready.words) {
+						local.add(word, location, position);
+						position++;
+					}
+					next++;
+					complete = ready.last;
+				}
+			}
+			if (complete) {
+				//the document is complete, so its posting lists can be compacted
+				local.seal();
+				invertedIndex.addAll(local);
+			}
+		}
+	}
+
+	/**
+	 * Consecutive lines of a file, which become words and then stemmed words
+	 * as they move through the stages.
+	 *
+	 * @author Charles Sy
+	 *
+	 */
+	private static class Batch {
+		/**
+		 * Tells the threads of a stage to stop
+		 */
+		private static final Batch DONE = new Batch(null, -1, null, true);
+
+		/**
+		 * The file of these lines
+		 */
+		private final Document document;
+
+		/**
+		 * The number of this batch within its file
+		 */
+		private final int sequence;
+
+		/**
+		 * Whether this is the last batch of its file
+		 */
+		private final boolean last;
+
+		/**
+		 * The lines, until they are split into words
+		 */
+		private List<String> lines;
+
+		/**
+		 * The words, which are replaced by their stems
+		 */
+		private List<String> words;
+
+		/**
+		 * Constructor
+		 *
+		 * @param document the file of these lines
+		 * @param sequence the number of this batch within its file
+		 * @param lines the lines
+		 * @param last whether this is the last batch of its file
+		 */
+		public Batch(Document document, int sequence, List<String> lines, boolean last) {
+			this.document = document;
+			this.sequence = sequence;
+			this.lines = lines;
+			this.words = null;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * One stage of the pipeline, with its own threads taking work from a
+	 * bounded input queue and sending the results to the next stage.
+	 *
+	 * @param <T> the type of work this stage takes
+	 *
+	 * @author Charles Sy
+	 *
+	 */
+	private abstract class Stage<T> {
+		/**
+		 * The name of this stage
+		 */
+		private final String name;
+
+		/**
+		 * What the items counted by this stage are
+		 */
+		private final String unit;
+
+		/**
+		 * The number of threads of this stage
+		 */
+		private final int threads;
+
+		/**
+		 * The work that tells a thread of this stage to stop
+		 */
+		private final T done;
+
+		/**
+		 * The stage the results are sent to, or {@code null} if this is the last
+		 */
+		private final Stage<Batch> next;
+
+		/**
+		 * The work waiting for this stage during the current build
+		 */
+		private BlockingQueue<T> input;
+
+		/**
+		 * The number of threads of this stage still running
+		 */
+		private final AtomicInteger running;
+
+		/**
+		 * The number of batches processed
+		 */
+		private final LongAdder batches;
+
+		/**
+		 * The number of items processed
+		 */
+		private final LongAdder items;
+
+		/**
+		 * The total nanoseconds spent processing
+		 */
+		private final LongAdder busy;
+
+		/**
+		 * The total nanoseconds spent waiting for room in the next queue
+		 */
+		private final LongAdder blocked;
+
+		/**
+		 * The largest number of batches seen waiting in the input queue
+		 */
+		private final LongAccumulator depth;
+
+		/**
+		 * Constructor
+		 *
+		 * @param name the name of this stage
+		 * @param unit what the items counted by this stage are
+		 * @param threads the number of threads of this stage
+		 * @param done the work that tells a thread of this stage to stop
+		 * @param next the stage the results are sent to, or {@code null} if this is the last
+		 */
+		public Stage(String name, String unit, int threads, T done, Stage<Batch> next) {
+			this.name = name;
+			this.unit = unit;
+			this.threads = Math.max(1, threads);
+			this.done = done;
+			this.next = next;
+			this.input = new ArrayBlockingQueue<>(capacity);
+			this.running = new AtomicInteger();
+			this.batches = new LongAdder();
+			this.items = new LongAdder();
+			this.busy = new LongAdder();
+			this.blocked = new LongAdder();
+			this.depth = new LongAccumulator(Math::max, 0);
+		}
+
+		/**
+		 * Processes one piece of work.
+		 *
+		 * @param work the work to process
+		 * @throws IOException if an IO error occurs
+		 * @throws InterruptedException if interrupted while sending the results
+		 */
+		protected abstract void process(T work) throws IOException, InterruptedException;
+
+		/**
+		 * Counts the items of the current piece of work.
+		 *
+		 * @param count the number of items
+		 */
+		protected void count(int count) {
+			items.add(count);
+		}
+
+		/**
+		 * Sends a batch to the next stage, waiting while its queue is full.
+		 *
+		 * @param batch the batch to send
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		protected void send(Batch batch) throws InterruptedException {
+			if (!next.input.offer(batch)) {
+				long start = System.nanoTime();
+				next.put(batch);
+				blocked.add(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Creates a new input queue and starts the threads of this stage.
+		 *
+		 * @param started the list to add the started threads to
+		 */
+		public void start(List<Thread> started) {
+			input = new ArrayBlockingQueue<>(capacity);
+			running.set(threads);
+			for (int i = 0; i < threads; i++) {
+				Thread thread = new Thread(this::run, "pipeline-" + name + "-" + i);
+				thread.start();
+				started.add(thread);
+			}
+		}
+
+		/**
+		 * Tells every thread of this stage to stop once its queue is empty.
+		 *
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public void finish() throws InterruptedException {
+			for (int i = 0; i < threads; i++) {
+				if (!put(done)) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Tells every thread of this stage to stop once its queue is empty, even
+		 * if the calling thread was interrupted.
+		 */
+		private void stop() {
+			boolean interrupted = Thread.interrupted();
+			int sent = 0;
+			while (sent < threads) {
+				try {
+					if (!put(done)) {
+						break;
+					}
+					sent++;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Adds work to the queue of this stage, waiting while it is full. Gives up
+		 * once every thread of this stage has stopped, so a stage that failed or
+		 * was interrupted never leaves the stages before it waiting forever.
+		 *
+		 * @param work the work to add
+		 * @return {@code true} if the work was added, {@code false} if nothing is
+		 *         left to take it
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		private boolean put(T work) throws InterruptedException {
+			while (!input.offer(work, 10, TimeUnit.MILLISECONDS)) {
+				if (running.get() == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Takes and processes work until told to stop or interrupted, and then
+		 * tells the next stage to stop once every thread of this stage is done.
+		 */
+		private void run() {
+			try {
+				while (true) {
+					depth.accumulate(input.size());
+					T work = input.take();
+					if (work == done) {
+						break;
+					}
+					long start = System.nanoTime();
+					try {
+						process(work);
+					}
+					catch (IOException | RuntimeException e) {
+						log.warn("Stage {} failed: {}", name, e.getMessage());
+						error.compareAndSet(null, e);
+					}
+					busy.add(System.nanoTime() - start);
+					batches.increment();
+				}
+			}
+			catch (InterruptedException e) {
+				log.catching(Level.DEBUG, e);
+				error.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				if (running.decrementAndGet() == 0 && next != null) {
+					next.stop();
+				}
+			}
+		}
+
+		/**
+		 * Returns the metrics of this stage.
+		 *
+		 * @return the metrics of this stage
+		 */
+		@Override
+		public String toString() {
+			double seconds = busy.sum() / 1e9;
+			return String.format(
+					"%-8s threads: %2d  batches: %8d  %s: %10d  busy: %8.3f s  %s/s per thread: %10.0f  blocked: %8.3f s  queue: %d/%d (max %d)",
+					name, threads, batches.sum(), unit, items.sum(), seconds, unit,
+					seconds == 0 ? 0 : items.sum() / seconds, blocked.sum() / 1e9, input.size(), capacity,
+					depth.get());
+		}
+	}
+}
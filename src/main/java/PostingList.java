@@ -0,0 +1,479 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted set of the positions a word was found in a single location, stored
+ * as primitive integers instead of boxed values in a tree. While a document is
+ * still being added, the positions are kept in a growable {@code int} array.
+ * Once the document is sealed, the positions are delta encoded as
+ * variable-length bytes, which usually takes one byte per position.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Charles Sy
+ *
+ */
+public class PostingList extends AbstractCollection<Integer> {
+	/**
+	 * The initial capacity of the positions array
+	 */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * The sorted positions, or {@code null} if this list is sealed
+	 */
+	private int[] positions;
+
+	/**
+	 * The delta and varint encoded positions, or {@code null} if this list is not sealed
+	 */
+	private byte[] encoded;
+
+	/**
+	 * The number of positions stored
+	 */
+	private int size;
+
+	/**
+	 * The largest position stored, only valid if the list is not empty
+	 */
+	private int last;
+
+	/**
+	 * Constructor initializes an empty list
+	 */
+	public PostingList() {
+		this.positions = new int[INITIAL_CAPACITY];
+		this.encoded = null;
+		this.size = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * Adds the position if it is not already stored. Positions are usually added
+	 * in increasing order, in which case this only appends to the array.
+	 *
+	 * @param position the position to add
+	 * @return {@code true} if the position was added
+	 */
+	public boolean add(int position) {
+		if (isSealed()) {
+			unseal();
+		}
+		if (size == 0 || position > last) {
+			ensureCapacity(size + 1);
+			positions[size++] = position;
+			last = position;
+			return true;
+		}
+		int index = Arrays.binarySearch(positions, 0, size, position);
+		if (index >= 0) {
+			return false;
+		}
+		index = -(index + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		positions[index] = position;
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds all of the positions from the other list that are not already stored.
+	 *
+	 * @param other the other posting list
+	 * @return {@code true} if any position was added
+	 */
+	public boolean addAll(PostingList other) {
+		if (other.size == 0) {
+			return false;
+		}
+		if (size == 0 && other.isSealed()) {
+			// the encoded bytes are never modified, so they can be shared
+			encoded = other.encoded;
+			positions = null;
+			size = other.size;
+			last = other.last;
+			return true;
+		}
+		int[] theirs = other.toIntArray();
+		if (isSealed()) {
+			unseal();
+		}
+		if (size == 0 || theirs[0] > last) {
+			ensureCapacity(size + theirs.length);
+			System.arraycopy(theirs, 0, positions, size, theirs.length);
+			size += theirs.length;
+			last = theirs[theirs.length - 1];
+			return true;
+		}
+		// merge both sorted arrays, skipping duplicates
+		int[] merged = new int[size + theirs.length];
+		int i = 0, j = 0, k = 0;
+		while (i < size && j < theirs.length) {
+			if (positions[i] < theirs[j]) {
+				merged[k++] = positions[i++];
+			}
+			else if (positions[i] > theirs[j]) {
+				merged[k++] = theirs[j++];
+			}
+			else {
+				merged[k++] = positions[i++];
+				j++;
+			}
+		}
+		while (i < size) {
+			merged[k++] = positions[i++];
+		}
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+		boolean changed = k != size;
+		positions = merged;
+		size = k;
+		last = merged[k - 1];
+		return changed;
+	}
+
+	/**
+	 * Determines whether the position is stored in this list.
+	 *
+	 * @param position the position to lookup
+	 * @return {@code true} if the position is stored
+	 */
+	public boolean contains(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		if (isSealed()) {
+			Decoder decoder = new Decoder();
+			while (decoder.hasNext()) {
+				int current = decoder.nextInt();
+				if (current >= position) {
+					return current == position;
+				}
+			}
+			return false;
+		}
+		return Arrays.binarySearch(positions, 0, size, position) >= 0;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return object instanceof Integer && contains(((Integer) object).intValue());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the largest position stored in this list.
+	 *
+	 * @return the largest position, or 0 if the list is empty
+	 */
+	public int last() {
+		return size == 0 ? 0 : last;
+	}
+
+	/**
+	 * Determines whether the positions are currently delta encoded.
+	 *
+	 * @return {@code true} if this list is sealed
+	 */
+	public boolean isSealed() {
+		return encoded != null;
+	}
+
+	/**
+	 * Delta and varint encodes the positions, releasing the positions array.
+	 * Adding a position to a sealed list will decode it again.
+	 */
+	public void seal() {
+		if (isSealed() || size == 0) {
+			return;
+		}
+		int length = 0;
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			length += varintLength(positions[i] - previous);
+			previous = positions[i];
+		}
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		previous = 0;
+		for (int i = 0; i < size; i++) {
+			offset = writeVarint(positions[i] - previous, bytes, offset);
+			previous = positions[i];
+		}
+		encoded = bytes;
+		positions = null;
+	}
+
+	/**
+	 * Adds the offset to every position. Only the first position of a sealed
+	 * list is stored as itself, so only its bytes are encoded again.
+	 *
+	 * @param offset the number to add to every position
+	 */
+	public void shift(int offset) {
+		if (size == 0 || offset == 0) {
+			return;
+		}
+		if (isSealed()) {
+			int first = 0;
+			int length = 0;
+			int shift = 0;
+			byte current;
+			do {
+				current = encoded[length++];
+				first |= (current & 0x7F) << shift;
+				shift += 7;
+			} while (current < 0);
+			// the encoded bytes may be shared, so they are copied instead of changed
+			byte[] bytes = new byte[varintLength(first + offset) + encoded.length - length];
+			int start = writeVarint(first + offset, bytes, 0);
+			System.arraycopy(encoded, length, bytes, start, encoded.length - length);
+			encoded = bytes;
+		}
+		else {
+			for (int i = 0; i < size; i++) {
+				positions[i] += offset;
+			}
+		}
+		last += offset;
+	}
+
+	/**
+	 * Creates a sealed list of the positions of every list, where all of the
+	 * positions of each list are larger than the positions of the lists before
+	 * it, such as the lists of one word in consecutive parts of a file. Each
+	 * list is sealed, and then only its first position is encoded again while
+	 * the rest of its bytes are copied as they are.
+	 *
+	 * @param lists the lists in increasing order of position
+	 * @return the sealed list of every position
+	 * @throws IllegalArgumentException if a list does not come after the lists before it
+	 */
+	public static PostingList concat(List<PostingList> lists) {
+		int length = 0;
+		int size = 0;
+		int previous = 0;
+		for (PostingList list : lists) {
+			if (list.size == 0) {
+				continue;
+			}
+			list.seal();
+			int first = list.first();
+			if (size > 0 && first <= previous) {
+				throw new IllegalArgumentException("The posting lists are not in increasing order.");
+			}
+			length += varintLength(first - previous) + list.encoded.length - varintLength(first);
+			size += list.size;
+			previous = list.last;
+		}
+
+		PostingList concatenated = new PostingList();
+		if (size == 0) {
+			return concatenated;
+		}
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		previous = 0;
+		for (PostingList list : lists) {
+			if (list.size == 0) {
+				continue;
+			}
+			int first = list.first();
+			int skipped = varintLength(first);
+			offset = writeVarint(first - previous, bytes, offset);
+			System.arraycopy(list.encoded, skipped, bytes, offset, list.encoded.length - skipped);
+			offset += list.encoded.length - skipped;
+			previous = list.last;
+		}
+		concatenated.encoded = bytes;
+		concatenated.positions = null;
+		concatenated.size = size;
+		concatenated.last = previous;
+		return concatenated;
+	}
+
+	/**
+	 * Returns the smallest position stored in this list.
+	 *
+	 * @return the smallest position, or 0 if the list is empty
+	 */
+	private int first() {
+		if (size == 0) {
+			return 0;
+		}
+		if (!isSealed()) {
+			return positions[0];
+		}
+		return new Decoder().nextInt();
+	}
+
+	/**
+	 * Returns a copy of the positions as a sorted array.
+	 *
+	 * @return the sorted positions
+	 */
+	public int[] toIntArray() {
+		if (!isSealed()) {
+			return Arrays.copyOf(positions, size);
+		}
+		int[] array = new int[size];
+		Decoder decoder = new Decoder();
+		for (int i = 0; i < size; i++) {
+			array[i] = decoder.nextInt();
+		}
+		return array;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		if (isSealed()) {
+			return new Decoder();
+		}
+		return new Iterator<Integer>() {
+			private final int[] array = positions;
+			private final int end = size;
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			@Override
+			public Integer next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return array[index++];
+			}
+		};
+	}
+
+	/**
+	 * Decodes the sealed positions back into a growable array.
+	 */
+	private void unseal() {
+		int[] array = toIntArray();
+		positions = array.length < INITIAL_CAPACITY ? Arrays.copyOf(array, INITIAL_CAPACITY) : array;
+		encoded = null;
+	}
+
+	/**
+	 * Grows the positions array to hold at least the given number of positions.
+	 *
+	 * @param capacity the minimum capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(capacity, positions.length * 2));
+		}
+	}
+
+	/**
+	 * Returns the number of bytes needed to varint encode the value.
+	 *
+	 * @param value the value treated as unsigned
+	 * @return the number of bytes
+	 */
+	private static int varintLength(int value) {
+		int length = 1;
+		while ((value >>>= 7) != 0) {
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the value as an unsigned varint, 7 bits per byte.
+	 *
+	 * @param value the value treated as unsigned
+	 * @param bytes the array to write to
+	 * @param offset the offset to start writing at
+	 * @return the offset after the written bytes
+	 */
+	private static int writeVarint(int value, byte[] bytes, int offset) {
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Iterates through the sealed positions by decoding them one at a time.
+	 */
+	private class Decoder implements Iterator<Integer> {
+		/**
+		 * The encoded bytes being decoded
+		 */
+		private final byte[] bytes = encoded;
+
+		/**
+		 * The number of positions to decode
+		 */
+		private final int end = size;
+
+		/**
+		 * The number of positions decoded so far
+		 */
+		private int count = 0;
+
+		/**
+		 * The offset of the next byte to decode
+		 */
+		private int offset = 0;
+
+		/**
+		 * The last position decoded
+		 */
+		private int previous = 0;
+
+		@Override
+		public boolean hasNext() {
+			return count < end;
+		}
+
+		/**
+		 * Decodes the next position without boxing it.
+		 *
+		 * @return the next position
+		 */
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int value = 0;
+			int shift = 0;
+			byte current;
+			do {
+				current = bytes[offset++];
+				value |= (current & 0x7F) << shift;
+				shift += 7;
+			} while (current < 0);
+			count++;
+			previous += value;
+			return previous;
+		}
+
+		@Override
+		public Integer next() {
+			return nextInt();
+		}
+	}
+}
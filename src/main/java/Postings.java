@@ -0,0 +1,252 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The postings of a single word: the IDs of the documents the word was found in,
+ * kept sorted, and the posting list of positions for each of those documents.
+ * Since documents are usually assigned increasing IDs as they are added, adding
+ * a new document only appends to the arrays.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Charles Sy
+ *
+ */
+public class Postings {
+	/**
+	 * The sorted document IDs
+	 */
+	private int[] documents;
+
+	/**
+	 * The positions found in each document
+	 */
+	private PostingList[] lists;
+
+	/**
+	 * The number of documents stored
+	 */
+	private int size;
+
+	/**
+	 * Constructor initializes empty postings
+	 */
+	public Postings() {
+		this.documents = new int[2];
+		this.lists = new PostingList[2];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the number of documents stored.
+	 *
+	 * @return the number of documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the document ID stored at the index.
+	 *
+	 * @param index the index between 0 and {@link #size()}
+	 * @return the document ID
+	 */
+	public int document(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Returns the posting list stored at the index.
+	 *
+	 * @param index the index between 0 and {@link #size()}
+	 * @return the positions found in that document
+	 */
+	public PostingList positions(int index) {
+		return lists[index];
+	}
+
+	/**
+	 * Returns the posting list of the document.
+	 *
+	 * @param document the document ID to lookup
+	 * @return the positions found in that document, or {@code null} if the word
+	 *         was not found in the document
+	 */
+	public PostingList get(int document) {
+		int index = indexOf(document);
+		return index < 0 ? null : lists[index];
+	}
+
+	/**
+	 * Returns the posting list of the document, adding an empty one if the
+	 * document is not stored yet.
+	 *
+	 * @param document the document ID to lookup
+	 * @return the positions found in that document
+	 */
+	public PostingList getOrAdd(int document) {
+		int index = indexOf(document);
+		if (index >= 0) {
+			return lists[index];
+		}
+		PostingList positions = new PostingList();
+		insert(-(index + 1), document, positions);
+		return positions;
+	}
+
+	/**
+	 * Merges the other postings into these, translating the other document IDs
+	 * through the provided table. Posting lists are sealed as they are merged.
+	 * Both sets of document IDs are sorted, so they are merged in a single pass,
+	 * and the other postings are appended in bulk if they all come after these.
+	 *
+	 * @param other the other postings
+	 * @param remap the ID in this index of each document ID in the other index
+	 */
+	public void addAll(Postings other, int[] remap) {
+		int count = other.size;
+		if (count == 0) {
+			return;
+		}
+		int[] theirs = new int[count];
+		PostingList[] theirLists = new PostingList[count];
+		boolean sorted = true;
+		for (int i = 0; i < count; i++) {
+			theirs[i] = remap[other.documents[i]];
+			theirLists[i] = other.lists[i];
+			theirLists[i].seal();
+			if (i > 0 && theirs[i] < theirs[i - 1]) {
+				sorted = false;
+			}
+		}
+		if (!sorted) {
+			// the remapped IDs are usually still in order, so only sort when needed
+			long[] order = new long[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = ((long) theirs[i] << 32) | i;
+			}
+			Arrays.sort(order);
+			PostingList[] reordered = new PostingList[count];
+			for (int i = 0; i < count; i++) {
+				theirs[i] = (int) (order[i] >>> 32);
+				reordered[i] = theirLists[(int) order[i]];
+			}
+			theirLists = reordered;
+		}
+
+		if (size == 0 || theirs[0] > documents[size - 1]) {
+			if (size + count > documents.length) {
+				documents = Arrays.copyOf(documents, Math.max(size + count, size * 2));
+				lists = Arrays.copyOf(lists, documents.length);
+			}
+			System.arraycopy(theirs, 0, documents, size, count);
+			System.arraycopy(theirLists, 0, lists, size, count);
+			size += count;
+			return;
+		}
+
+		int[] mergedDocuments = new int[size + count];
+		PostingList[] mergedLists = new PostingList[size + count];
+		int i = 0, j = 0, k = 0;
+		while (i < size && j < count) {
+			if (documents[i] < theirs[j]) {
+				mergedDocuments[k] = documents[i];
+				mergedLists[k++] = lists[i++];
+			}
+			else if (documents[i] > theirs[j]) {
+				mergedDocuments[k] = theirs[j];
+				mergedLists[k++] = theirLists[j++];
+			}
+			else {
+				lists[i].addAll(theirLists[j++]);
+				lists[i].seal();
+				mergedDocuments[k] = documents[i];
+				mergedLists[k++] = lists[i++];
+			}
+		}
+		while (i < size) {
+			mergedDocuments[k] = documents[i];
+			mergedLists[k++] = lists[i++];
+		}
+		while (j < count) {
+			mergedDocuments[k] = theirs[j];
+			mergedLists[k++] = theirLists[j++];
+		}
+		documents = mergedDocuments;
+		lists = mergedLists;
+		size = k;
+	}
+
+	/**
+	 * Creates the postings of one word from several consecutive parts of the
+	 * same documents, where every position in each part is larger than the
+	 * positions of the same document in the parts before it. The posting lists
+	 * of each document are combined once by {@link PostingList#concat(List)},
+	 * instead of being merged again for every part.
+	 *
+	 * @param parts the postings of each part in order, or {@code null} for a
+	 *        part without the word
+	 * @param remaps the ID in the combined index of each document ID of each part
+	 * @return the combined postings
+	 */
+	public static Postings concat(Postings[] parts, int[][] remaps) {
+		TreeMap<Integer, List<PostingList>> found = new TreeMap<>();
+		for (int part = 0; part < parts.length; part++) {
+			if (parts[part] == null) {
+				continue;
+			}
+			for (int i = 0; i < parts[part].size; i++) {
+				int document = remaps[part][parts[part].documents[i]];
+				found.computeIfAbsent(document, k -> new ArrayList<>()).add(parts[part].lists[i]);
+			}
+		}
+		Postings postings = new Postings();
+		postings.documents = new int[Math.max(2, found.size())];
+		postings.lists = new PostingList[postings.documents.length];
+		for (var entry : found.entrySet()) {
+			postings.documents[postings.size] = entry.getKey();
+			postings.lists[postings.size++] = PostingList.concat(entry.getValue());
+		}
+		return postings;
+	}
+
+	/**
+	 * Finds the index of the document, checking the last document first since
+	 * that is where new positions are usually added.
+	 *
+	 * @param document the document ID to find
+	 * @return the index of the document, or {@code -(insertion point) - 1}
+	 * @see Arrays#binarySearch(int[], int, int, int)
+	 */
+	private int indexOf(int document) {
+		if (size == 0 || document > documents[size - 1]) {
+			return -(size + 1);
+		}
+		if (document == documents[size - 1]) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Inserts the document and its posting list at the index.
+	 *
+	 * @param index the index to insert at
+	 * @param document the document ID
+	 * @param positions the positions found in that document
+	 */
+	private void insert(int index, int document, PostingList positions) {
+		if (size == documents.length) {
+			documents = Arrays.copyOf(documents, size * 2);
+			lists = Arrays.copyOf(lists, size * 2);
+		}
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		System.arraycopy(lists, index, lists, index + 1, size - index);
+		documents[index] = document;
+		lists[index] = positions;
+		size++;
+	}
+}
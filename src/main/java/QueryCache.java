@@ -0,0 +1,280 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe least recently used cache of search results shared by the
+ * query builders and the search servlet. Entries are keyed by the search mode,
+ * the sorted query words, and the number of results, and are bounded both by
+ * count and by an estimate of their size in bytes.
+ *
+ * Each entry remembers the index it was computed from and the version of that
+ * index when the search started, so a result is only reused while the index is
+ * the same object and has not changed since. Cached results are shared between
+ * callers, so they should never be modified.
+ *
+ * @author Charles Sy
+ *
+ */
+public class QueryCache {
+	/** The default maximum number of cached queries. */
+	public static final int DEFAULT_ENTRIES = 1024;
+
+	/** The default maximum estimated size of the cached results in bytes. */
+	public static final long DEFAULT_BYTES = 32L * 1024 * 1024;
+
+	/** The estimated size of an entry without its key or results. */
+	private static final int ENTRY_BYTES = 96;
+
+	/** The estimated size of a single search result without its location. */
+	private static final int RESULT_BYTES = 48;
+
+	/**
+	 * The cached entries in access order, guarded by this object's lock
+	 */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * The maximum number of cached queries
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The maximum estimated size of the cached results in bytes
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The estimated size of the cached results in bytes, guarded by this object's lock
+	 */
+	private long bytes;
+
+	/**
+	 * The number of searches answered from the cache, guarded by this object's lock
+	 */
+	private long hits;
+
+	/**
+	 * The number of searches that were not cached or were stale, guarded by this object's lock
+	 */
+	private long misses;
+
+	/**
+	 * The number of entries removed to stay within the bounds, guarded by this object's lock
+	 */
+	private long evictions;
+
+	/**
+	 * Initializes a cache with the default bounds.
+	 *
+	 * @see #QueryCache(int, long)
+	 */
+	public QueryCache() {
+		this(DEFAULT_ENTRIES, DEFAULT_BYTES);
+	}
+
+	/**
+	 * Initializes a cache. A cache with no entries never stores anything, but
+	 * still counts its misses.
+	 *
+	 * @param maxEntries the maximum number of cached queries
+	 * @param maxBytes the maximum estimated size of the cached results in bytes
+	 */
+	public QueryCache(int maxEntries, long maxBytes) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.maxEntries = Math.max(0, maxEntries);
+		this.maxBytes = Math.max(0, maxBytes);
+		this.bytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Returns the cached results of an exact or partial search, searching the
+	 * index on a miss.
+	 *
+	 * @param index the inverted index to search
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> search(SearchableIndexInterface index, Set<String> queries,
+			boolean exact, int k) {
+		return get(index, exact ? "exact" : "partial", queries, k, () -> index.search(queries, exact, k));
+	}
+
+	/**
+	 * Returns the cached results of any kind of search, running the search on a
+	 * miss. The search runs without holding the cache's lock, so two threads may
+	 * both run the same missing search.
+	 *
+	 * @param index the inverted index being searched
+	 * @param mode the name of the type of search
+	 * @param queries the query words
+	 * @param k the maximum number of results
+	 * @param search performs the search
+	 * @return the search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> get(SearchableIndexInterface index, String mode,
+			Collection<String> queries, int k, Supplier<List<InvertedIndex.SingleSearchResult>> search) {
+		String key = mode + ' ' + k + ' ' + String.join(" ", new TreeSet<>(queries));
+		// read the version first, so a write during the search makes the entry stale
+		long version = index.version();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.index == index && entry.version == version) {
+				hits++;
+				return entry.results;
+			}
+			misses++;
+		}
+
+		List<InvertedIndex.SingleSearchResult> results = search.get();
+		if (maxEntries > 0) {
+			Entry entry = new Entry(index, version, results, estimate(key, results));
+			synchronized (this) {
+				Entry previous = entries.put(key, entry);
+				if (previous != null) {
+					bytes -= previous.bytes;
+				}
+				bytes += entry.bytes;
+				evict();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache is within its
+	 * bounds. Must be called while holding this object's lock.
+	 */
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+			bytes -= iterator.next().bytes;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Estimates the size of an entry in bytes.
+	 *
+	 * @param key the key of the entry
+	 * @param results the cached results
+	 * @return the estimated size in bytes
+	 */
+	private static long estimate(String key, List<InvertedIndex.SingleSearchResult> results) {
+		long size = ENTRY_BYTES + 2L * key.length();
+		for (InvertedIndex.SingleSearchResult result : results) {
+			size += RESULT_BYTES + 2L * result.getLocation().length();
+		}
+		return size;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the estimated size of the cached results.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of searches that were not cached or were stale.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries removed to stay within the bounds.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("entries: %d, bytes: %d, hits: %d, misses: %d, evictions: %d",
+				entries.size(), bytes, hits, misses, evictions);
+	}
+
+	/**
+	 * The cached results of a single query.
+	 */
+	private static class Entry {
+		/**
+		 * The index the results were computed from
+		 */
+		private final SearchableIndexInterface index;
+
+		/**
+		 * The version of the index when the search started
+		 */
+		private final long version;
+
+		/**
+		 * The search results
+		 */
+		private final List<InvertedIndex.SingleSearchResult> results;
+
+		/**
+		 * The estimated size of the entry in bytes
+		 */
+		private final long bytes;
+
+		/**
+		 * Constructor
+		 *
+		 * @param index the index the results were computed from
+		 * @param version the version of the index when the search started
+		 * @param results the search results
+		 * @param bytes the estimated size of the entry in bytes
+		 */
+		public Entry(SearchableIndexInterface index, long version, List<InvertedIndex.SingleSearchResult> results,
+				long bytes) {
+			this.index = index;
+			this.version = version;
+			this.results = results;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -15,21 +15,54 @@ public class QueryResultBuilder implements QueryResultBuilderInterface {
 	/**
 	 * The inverted index to search
 	 */
-	private final InvertedIndex invertedIndex;
+	private final SearchableIndexInterface invertedIndex;
 	
 	/**
 	 * Stores single search results
 	 */
 	private final Map<String, Collection<InvertedIndex.SingleSearchResult>> results;
 	
+	/**
+	 * The maximum number of results kept per query, or 0 for all of them
+	 */
+	private final int limit;
+	
+	/**
+	 * The cache of search results, which may be shared with other builders
+	 */
+	private final QueryCache cache;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param invertedIndex the inverted index
+	 */
+	public QueryResultBuilder(SearchableIndexInterface invertedIndex) {
+		this(invertedIndex, 0);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param invertedIndex the inverted index
+	 * @param limit the maximum number of results kept per query, or 0 for all of them
+	 */
+	public QueryResultBuilder(SearchableIndexInterface invertedIndex, int limit) {
+		this(invertedIndex, limit, new QueryCache(0, 0));
+	}
+	
 	/**
 	 * Constructor
 	 * 
 	 * @param invertedIndex the inverted index
+	 * @param limit the maximum number of results kept per query, or 0 for all of them
+	 * @param cache the cache of search results
 	 */
-	public QueryResultBuilder(InvertedIndex invertedIndex) {
+	public QueryResultBuilder(SearchableIndexInterface invertedIndex, int limit, QueryCache cache) {
 		this.invertedIndex = invertedIndex;
 		this.results = new TreeMap<>();
+		this.limit = limit;
+		this.cache = cache;
 	}
 	
 	/**
@@ -44,7 +77,7 @@ public class QueryResultBuilder implements QueryResultBuilderInterface {
 		if (!set.isEmpty()) {
 			String cleaned = String.join(" ", set);
 			if (!results.containsKey(cleaned)) {
-				results.put(cleaned, invertedIndex.search(set, exact));
+				results.put(cleaned, cache.search(invertedIndex, set, exact, limit));
 			}
 		}
 	}
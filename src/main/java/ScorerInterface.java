@@ -0,0 +1,57 @@
+/**
+ * The shared interface implemented by the ways of ranking search results of a
+ * {@link FrozenInvertedIndex}. A scorer is created once per index, so any
+ * collection statistics it needs are computed up front and kept in primitive
+ * arrays indexed by word or document ID.
+ *
+ * @author Charles Sy
+ *
+ */
+public interface ScorerInterface {
+
+	/**
+	 * Returns how much a single word adds to the score of a document. Must never
+	 * be negative, since searches use the highest value of each word as an upper
+	 * bound when skipping documents.
+	 *
+	 * @param term the index of the word in sorted order
+	 * @param document the document ID
+	 * @param frequency the number of times the word appears in the document
+	 * @return the score of the word in the document
+	 */
+	public double score(int term, int document, int frequency);
+
+	/**
+	 * Returns the final score of a document from the scores of its words.
+	 *
+	 * @param document the document ID
+	 * @param matches the total number of times any of the words appear in the document
+	 * @param sum the sum of the scores of its words
+	 * @return the score of the document
+	 */
+	public default double total(int document, int matches, double sum) {
+		return sum;
+	}
+
+	/**
+	 * Determines whether the final score of a document only depends on its total
+	 * matches, which lets searches use postings merged across many words.
+	 *
+	 * @return {@code true} if {@link #score(int, int, int)} is never needed
+	 */
+	public default boolean countsOnly() {
+		return false;
+	}
+
+	/**
+	 * Determines whether the score of a document only depends on that document,
+	 * so the scores of separate indexes can be compared. Scorers that use the
+	 * statistics of the whole index, such as BM25, can not be merged across the
+	 * nodes of a {@link SearchCoordinator}.
+	 *
+	 * @return {@code true} if scores from different indexes can be compared
+	 */
+	public default boolean comparable() {
+		return false;
+	}
+}
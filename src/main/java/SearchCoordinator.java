@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Searches the indexes of several other processes, each started with
+ * {@code -server} on its own part of the corpus, by sending every query to the
+ * {@link ShardServlet} of each node at the same time and merging the ranked
+ * results. Every node must own different locations, so a result only comes
+ * from one node. With the default scorer, which only uses each document, the
+ * merged results then match a single index of the whole corpus. Nodes started
+ * with {@code -scorer bm25} refuse to answer, since BM25 scores use the
+ * statistics of each node's own part of the corpus and can not be compared.
+ *
+ * A node that fails or does not answer within the timeout is left out of that
+ * search, so the results are partial instead of missing. The coordinator holds
+ * no words or locations itself, so it only implements searching.
+ *
+ * This class is thread-safe.
+ *
+ * @author Charles Sy
+ *
+ */
+public class SearchCoordinator implements SearchableIndexInterface {
+	/** The default number of milliseconds to wait for each node. */
+	public static final long DEFAULT_TIMEOUT = 2000;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * The search endpoint of each node
+	 */
+	private final List<URI> nodes;
+
+	/**
+	 * The longest time to wait for each node
+	 */
+	private final Duration timeout;
+
+	/**
+	 * Sends the requests to every node
+	 */
+	private final HttpClient client;
+
+	/**
+	 * The number of node requests that failed or timed out
+	 */
+	private final AtomicLong failures;
+
+	/**
+	 * Constructor
+	 *
+	 * @param nodes the host and port of each node
+	 * @param timeout the number of milliseconds to wait for each node
+	 * @throws IllegalArgumentException if a node is not a valid host and port
+	 */
+	public SearchCoordinator(Collection<String> nodes, long timeout) {
+		this.nodes = new ArrayList<>(nodes.size());
+		for (String node : nodes) {
+			this.nodes.add(URI.create("http://" + node.strip() + "/shard"));
+		}
+		this.timeout = Duration.ofMillis(Math.max(1, timeout));
+		this.client = HttpClient.newBuilder().connectTimeout(this.timeout).build();
+		this.failures = new AtomicLong();
+	}
+
+	/**
+	 * Returns the number of node requests that failed or timed out so far.
+	 *
+	 * @return the number of failures
+	 */
+	public long failures() {
+		return failures.get();
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		return gather(exact ? "exact" : "partial", queries, 0, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return gather("wildcard", queries, 0, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return gather("fuzzy", queries, distance, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		return search(queries, true, 0);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, 0);
+	}
+
+	/**
+	 * Sends the search to every node at once, waits for each answer up to the
+	 * timeout, and keeps the best k of all the results that arrived.
+	 *
+	 * @param mode the type of search
+	 * @param queries the query words
+	 * @param distance the largest edit distance of a fuzzy search
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	private List<InvertedIndex.SingleSearchResult> gather(String mode, Set<String> queries, int distance, int k) {
+		String parameters = "?mode=" + mode + "&limit=" + k + "&distance=" + distance + "&words="
+				+ URLEncoder.encode(String.join(" ", queries), StandardCharsets.UTF_8);
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(nodes.size());
+		for (URI node : nodes) {
+			HttpRequest request = HttpRequest.newBuilder(URI.create(node + parameters))
+					.timeout(timeout).GET().build();
+			responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+		}
+
+		List<InvertedIndex.SingleSearchResult> results = new ArrayList<>();
+		for (int i = 0; i < responses.size(); i++) {
+			try {
+				HttpResponse<String> response = responses.get(i).join();
+				if (response.statusCode() != 200) {
+					throw new IOException("Status " + response.statusCode() + " " + response.body().strip());
+				}
+				results.addAll(parse(response.body()));
+			}
+			catch (CompletionException | IOException | IllegalArgumentException e) {
+				failures.incrementAndGet();
+				log.warn("Leaving out {} from the results: {}", nodes.get(i), e.getMessage());
+			}
+		}
+		return SearchableIndexInterface.top(results, k);
+	}
+
+	/**
+	 * Parses the search results written by {@link ShardServlet#write(Collection, java.io.Writer)}.
+	 *
+	 * @param body the JSON array of results, one object per line
+	 * @return the search results
+	 * @throws IllegalArgumentException if the body is not in the expected format
+	 */
+	public static List<InvertedIndex.SingleSearchResult> parse(String body) {
+		List<InvertedIndex.SingleSearchResult> results = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			line = line.strip();
+			if (!line.startsWith("{")) {
+				continue;
+			}
+			String prefix = "{\"where\": \"";
+			if (!line.startsWith(prefix)) {
+				throw new IllegalArgumentException("Unexpected result: " + line);
+			}
+			// unescape the location up to its closing quote
+			StringBuilder location = new StringBuilder();
+			int i = prefix.length();
+			for (; i < line.length() && line.charAt(i) != '"'; i++) {
+				char c = line.charAt(i);
+				if (c == '\\' && i + 1 < line.length()) {
+					c = line.charAt(++i);
+					if (c == 'u' && i + 4 < line.length()) {
+						c = (char) Integer.parseInt(line.substring(i + 1, i + 5), 16);
+						i += 4;
+					}
+				}
+				location.append(c);
+			}
+
+			// the remaining fields are numbers in a fixed order
+			String[] fields = line.substring(i + 1).replaceAll("[}, ]+$", "").split(", ");
+			if (fields.length != 4) {
+				throw new IllegalArgumentException("Unexpected result: " + line);
+			}
+			results.add(new InvertedIndex.SingleSearchResult(location.toString(),
+					Integer.parseInt(value(fields[1])), Integer.parseInt(value(fields[2])),
+					Double.parseDouble(value(fields[3]))));
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the value of a {@code "name": value} field.
+	 *
+	 * @param field the field
+	 * @return the value
+	 */
+	private static String value(String field) {
+		return field.substring(field.indexOf(':') + 1).strip();
+	}
+
+	@Override
+	public String toString() {
+		return "Coordinator of " + nodes;
+	}
+}
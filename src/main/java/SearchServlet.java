@@ -12,6 +12,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -37,6 +38,11 @@ public class SearchServlet extends HttpServlet {
 	 */
 	private static final String TITLE = "SearchX";
 
+	/**
+	 * The largest edit distance allowed by a fuzzy search
+	 */
+	private static final int FUZZY_DISTANCE = 2;
+
 	/** 
 	 * A list of output results from a partial search
 	 */
@@ -45,15 +51,44 @@ public class SearchServlet extends HttpServlet {
 	/**
 	 * The inverted index
 	 */
-	private InvertedIndex invertedIndex;
+	private SearchableIndexInterface invertedIndex;
+
+	/**
+	 * The maximum number of results shown, or 0 for all of them
+	 */
+	private final int limit;
+
+	/**
+	 * The cache of search results, which may be shared with the query builders
+	 */
+	private final QueryCache cache;
 
 	/**
 	 * @param invertedIndex the inverted index
 	 */
-	public SearchServlet(InvertedIndex invertedIndex) {
+	public SearchServlet(SearchableIndexInterface invertedIndex) {
+		this(invertedIndex, 0);
+	}
+
+	/**
+	 * @param invertedIndex the inverted index
+	 * @param limit the maximum number of results shown, or 0 for all of them
+	 */
+	public SearchServlet(SearchableIndexInterface invertedIndex, int limit) {
+		this(invertedIndex, limit, new QueryCache(0, 0));
+	}
+
+	/**
+	 * @param invertedIndex the inverted index
+	 * @param limit the maximum number of results shown, or 0 for all of them
+	 * @param cache the cache of search results
+	 */
+	public SearchServlet(SearchableIndexInterface invertedIndex, int limit, QueryCache cache) {
 		super();
 		output = new LinkedList<>();
 		this.invertedIndex = invertedIndex;
+		this.limit = limit;
+		this.cache = cache;
 	}
 
 	@Override
@@ -79,6 +114,13 @@ public class SearchServlet extends HttpServlet {
 		out.printf("<form method=\"%s\" action=\"%s\">%n", "POST", request.getServletPath());
 		//displays search bar
 		out.printf("<input class=\"input\" size=\"100\" type=\"text\" name=\"%s\" placeholder=\"Search something..\">", "search");
+		//displays the type of search to perform
+		out.printf("<select name=\"%s\">", "mode");
+		out.printf("<option value=\"partial\">Prefix</option>");
+		out.printf("<option value=\"exact\">Exact</option>");
+		out.printf("<option value=\"wildcard\">Wildcard (*)</option>");
+		out.printf("<option value=\"fuzzy\">Fuzzy</option>");
+		out.printf("</select>");
 		//displays search button
 		out.printf("<div class=\"control\">");
 		out.printf("<button class=\"button is-primary\" onclick=\\\"clicked()\\\" name=\\\"enter\\\" type=\\\"submit\\\">");
@@ -110,14 +152,32 @@ public class SearchServlet extends HttpServlet {
 		
 		//checks if query line is given by  user
 		if (query != null && !query.isBlank()) {	
-			SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
+			String mode = request.getParameter("mode");
+			Stemmer stemmer = CachingStemmer.shared();
 			Set<String> querySet = new HashSet<String>();
 			for (String word : query.split(" ")) {
-				//add each cleaned and stemmed word to a set
-				querySet.add((stemmer.stem(word.toLowerCase())).toString());
+				if ("wildcard".equals(mode)) {
+					//stemming would change the pattern, so only lowercase it
+					querySet.add(word.toLowerCase());
+				}
+				else {
+					//add each cleaned and stemmed word to a set
+					querySet.add((stemmer.stem(word.toLowerCase())).toString());
+				}
+			}
+			//perform the chosen search (partial by default) on the queries in the set and save the results in a list
+			Collection<InvertedIndex.SingleSearchResult> results;
+			if ("wildcard".equals(mode)) {
+				results = cache.get(invertedIndex, mode, querySet, limit,
+						() -> invertedIndex.wildcardSearch(querySet, limit));
+			}
+			else if ("fuzzy".equals(mode)) {
+				results = cache.get(invertedIndex, mode, querySet, limit,
+						() -> invertedIndex.fuzzySearch(querySet, FUZZY_DISTANCE, limit));
+			}
+			else {
+				results = cache.search(invertedIndex, querySet, "exact".equals(mode), limit);
 			}
-			//perform partial search on the queries in the set and save the results in a list
-			Collection<InvertedIndex.SingleSearchResult> results = this.invertedIndex.partialSearch(querySet);
 			//checks if results list is empty
 			if (results.isEmpty()) {
 				output.clear();
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The interface of anything that can answer searches, such as an inverted
+ * index or a coordinator that asks the indexes of other processes. The query
+ * builders and servlets only search, so they only depend on this interface.
+ *
+ * @author Charles Sy
+ *
+ */
+public interface SearchableIndexInterface {
+
+	/**
+	 * Helper method that determines what type of search to perform
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @return a sorted list of search results
+	 */
+	public default List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact) {
+		if (exact) {
+			return exactSearch(queries);
+		} else {
+			return partialSearch(queries);
+		}
+	}
+
+	/**
+	 * Performs a search and returns only the best results.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	public default List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		List<InvertedIndex.SingleSearchResult> results = search(queries, exact);
+		if (k > 0 && results.size() > k) {
+			return new ArrayList<>(results.subList(0, k));
+		}
+		return results;
+	}
+
+	/**
+	 * Selects the best results using a bounded heap, which takes O(n log k) time
+	 * instead of sorting every result.
+	 *
+	 * @param results the unsorted search results
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	public static List<InvertedIndex.SingleSearchResult> top(Collection<InvertedIndex.SingleSearchResult> results, int k) {
+		if (k <= 0 || results.size() <= k) {
+			List<InvertedIndex.SingleSearchResult> sorted = new ArrayList<>(results);
+			Collections.sort(sorted);
+			return sorted;
+		}
+		// the head of the heap is the worst of the best results found so far
+		PriorityQueue<InvertedIndex.SingleSearchResult> heap = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+		for (InvertedIndex.SingleSearchResult result : results) {
+			if (heap.size() < k) {
+				heap.add(result);
+			}
+			else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
+			}
+		}
+		List<InvertedIndex.SingleSearchResult> sorted = new ArrayList<>(heap);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Performs exact search
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries);
+
+	/**
+	 * Performs partial search
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries);
+
+	/**
+	 * Performs a wildcard search, where {@code *} in a query matches any number
+	 * of characters.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k);
+
+	/**
+	 * Performs a fuzzy search, matching every word within an edit distance of
+	 * each query.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k);
+
+	/**
+	 * Determines whether the score of every result only depends on its own
+	 * document, so the results of separate indexes can be merged by score.
+	 *
+	 * @return {@code true} if scores can be compared with those of other indexes
+	 */
+	public default boolean comparableScores() {
+		return true;
+	}
+
+	/**
+	 * Returns a counter that changes whenever words are added to the index, so
+	 * cached search results can tell whether they are still current. Writers
+	 * change it after their words are visible, so a result computed after
+	 * reading the counter is never newer than the counter says.
+	 *
+	 * @return the version of the index, which is always 0 for read-only indexes
+	 */
+	public default long version() {
+		return 0;
+	}
+}
@@ -0,0 +1,426 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A thread-safe inverted index made of immutable segments, similar to a
+ * log-structured merge tree. Every call to {@link #addAll(InvertedIndex)}
+ * freezes the local index into a new segment without touching the existing
+ * ones, searches fan out over all segments and merge the results, and a
+ * background thread merges segments of similar size into larger ones.
+ *
+ * The list of segments is replaced instead of modified, so searches read the
+ * current list without any locking and never wait behind a merge. Each location
+ * must be added by a single call to {@link #addAll(InvertedIndex)}, which is how
+ * the builders and web crawler add documents, so segments never share a
+ * location and the results of each segment are already complete.
+ *
+ * @author Charles Sy
+ *
+ */
+public class SegmentedInvertedIndex implements WritableInvertedIndexInterface {
+	/** The default number of segments of a similar size that are merged together. */
+	public static final int DEFAULT_MERGE_FACTOR = 4;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The current segments, replaced as a whole whenever segments are added or merged. */
+	private volatile List<FrozenInvertedIndex> segments;
+
+	/** The number of segments of a similar size that are merged together. */
+	private final int mergeFactor;
+
+	/** Applied to every new or merged segment before it is published, such as to choose its scorer. */
+	private final UnaryOperator<FrozenInvertedIndex> configure;
+
+	/** The lock object used to publish a new list of segments. */
+	private final Object lock;
+
+	/** The background thread that merges segments. */
+	private final Merger merger;
+
+	/** Used to signal the merger should stop. */
+	private volatile boolean shutdown;
+
+	/** Incremented every time a segment is added, but not when segments are merged. */
+	private volatile long version;
+
+	/**
+	 * Initializes an empty index with the default merge factor.
+	 *
+	 * @see #SegmentedInvertedIndex(int, UnaryOperator)
+	 */
+	public SegmentedInvertedIndex() {
+		this(DEFAULT_MERGE_FACTOR, UnaryOperator.identity());
+	}
+
+	/**
+	 * Initializes an empty index and starts the background merger.
+	 *
+	 * @param mergeFactor the number of segments of a similar size to merge
+	 *        together; should be at least 2
+	 * @param configure applied to every new or merged segment before it is
+	 *        published, such as {@code index -> index.withScorer(Bm25Scorer::new)}
+	 */
+	public SegmentedInvertedIndex(int mergeFactor, UnaryOperator<FrozenInvertedIndex> configure) {
+		this.segments = Collections.emptyList();
+		this.mergeFactor = Math.max(2, mergeFactor);
+		this.configure = configure;
+		this.lock = new Object();
+		this.shutdown = false;
+		this.merger = new Merger();
+		this.merger.start();
+	}
+
+	/**
+	 * Freezes the local index into a new segment. The freezing is done by the
+	 * calling thread, and only publishing the new list of segments is
+	 * synchronized.
+	 *
+	 * @param other the local inverted index
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		FrozenInvertedIndex segment = other.freeze();
+		if (segment.size() == 0) {
+			return;
+		}
+		segment = configure.apply(segment);
+		synchronized (lock) {
+			List<FrozenInvertedIndex> next = new ArrayList<>(segments);
+			next.add(segment);
+			segments = Collections.unmodifiableList(next);
+			version++;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * Returns the current number of segments.
+	 *
+	 * @return the number of segments
+	 */
+	public int segments() {
+		return segments.size();
+	}
+
+	/**
+	 * Merges every segment into one, which also becomes the only segment of
+	 * this index.
+	 *
+	 * @return the frozen inverted index
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		List<FrozenInvertedIndex> current = segments;
+		if (current.isEmpty()) {
+			return new InvertedIndex().freeze();
+		}
+		FrozenInvertedIndex merged = merge(current);
+		publish(current, merged);
+		return merged;
+	}
+
+	/**
+	 * Merges the segments into one, and configures the result if it is a new
+	 * segment. A single segment is returned as it is, since it is already
+	 * configured.
+	 *
+	 * @param merged the segments to merge
+	 * @return the merged segment
+	 */
+	private FrozenInvertedIndex merge(List<FrozenInvertedIndex> merged) {
+		if (merged.size() == 1) {
+			return merged.get(0);
+		}
+		return configure.apply(FrozenInvertedIndex.merge(merged));
+	}
+
+	/**
+	 * Stops the background merger. Segments can still be added and searched, but
+	 * will no longer be merged until {@link #freeze()} is called.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Replaces the merged segments with the result of merging them, keeping any
+	 * segments that were added during the merge. Nothing is replaced if another
+	 * merge already replaced any of the merged segments.
+	 *
+	 * @param merged the segments that were merged
+	 * @param result the merged segment
+	 * @return {@code true} if the merged segment was published
+	 */
+	private boolean publish(List<FrozenInvertedIndex> merged, FrozenInvertedIndex result) {
+		// compare by identity since segments are never copied
+		Set<FrozenInvertedIndex> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+		removed.addAll(merged);
+		synchronized (lock) {
+			List<FrozenInvertedIndex> next = new ArrayList<>(segments.size());
+			for (FrozenInvertedIndex segment : segments) {
+				if (!removed.remove(segment)) {
+					next.add(segment);
+				}
+			}
+			if (!removed.isEmpty()) {
+				return false;
+			}
+			next.add(result);
+			segments = Collections.unmodifiableList(next);
+			return true;
+		}
+	}
+
+	/**
+	 * Finds segments to merge using a size-tiered policy. Segments are grouped
+	 * into tiers by the logarithm of their size, and a tier is merged once it
+	 * holds at least {@link #mergeFactor} segments.
+	 *
+	 * @param current the current segments
+	 * @return the segments to merge, or an empty list if no tier is full
+	 */
+	private List<FrozenInvertedIndex> candidates(List<FrozenInvertedIndex> current) {
+		Map<Integer, List<FrozenInvertedIndex>> tiers = new HashMap<>();
+		for (FrozenInvertedIndex segment : current) {
+			int tier = (int) (Math.log(Math.max(1, segment.postings())) / Math.log(mergeFactor));
+			List<FrozenInvertedIndex> members = tiers.computeIfAbsent(tier, k -> new ArrayList<>());
+			members.add(segment);
+			if (members.size() >= mergeFactor) {
+				return members;
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	@Override
+	public int size() {
+		return get().size();
+	}
+
+	@Override
+	public int size(String word) {
+		int size = -1;
+		for (FrozenInvertedIndex segment : segments) {
+			int found = segment.size(word);
+			if (found >= 0) {
+				size = Math.max(size, 0) + found;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public int size(String word, String location) {
+		for (FrozenInvertedIndex segment : segments) {
+			int found = segment.size(word, location);
+			if (found >= 0) {
+				return found;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		for (FrozenInvertedIndex segment : segments) {
+			if (segment.contains(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return size(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		for (FrozenInvertedIndex segment : segments) {
+			if (segment.contains(word, location, position)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Collection<String> get() {
+		TreeSet<String> words = new TreeSet<>();
+		for (FrozenInvertedIndex segment : segments) {
+			words.addAll(segment.get());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Collection<String> get(String word) {
+		TreeSet<String> locations = new TreeSet<>();
+		for (FrozenInvertedIndex segment : segments) {
+			locations.addAll(segment.get(word));
+		}
+		return Collections.unmodifiableSet(locations);
+	}
+
+	@Override
+	public Collection<Integer> get(String word, String location) {
+		for (FrozenInvertedIndex segment : segments) {
+			if (segment.contains(word, location)) {
+				return segment.get(word, location);
+			}
+		}
+		return Collections.emptySet();
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (FrozenInvertedIndex segment : segments) {
+			list.addAll(segment.exactSearch(queries));
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (FrozenInvertedIndex segment : segments) {
+			list.addAll(segment.partialSearch(queries));
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Searches every segment for its best results and keeps the best of those,
+	 * which are the best results overall since segments never share a location.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (FrozenInvertedIndex segment : segments) {
+			list.addAll(segment.search(queries, exact, k));
+		}
+		return SearchableIndexInterface.top(list, k);
+	}
+
+	/**
+	 * Searches every segment with wildcards instead of freezing a merged copy.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (FrozenInvertedIndex segment : segments) {
+			list.addAll(segment.wildcardSearch(queries, k));
+		}
+		return SearchableIndexInterface.top(list, k);
+	}
+
+	/**
+	 * Searches every segment for similar words instead of freezing a merged copy.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		List<InvertedIndex.SingleSearchResult> list = new ArrayList<>();
+		for (FrozenInvertedIndex segment : segments) {
+			list.addAll(segment.fuzzySearch(queries, distance, k));
+		}
+		return SearchableIndexInterface.top(list, k);
+	}
+
+	@Override
+	public void toJsonInvertedIndex(Path path) throws IOException {
+		freeze().toJsonInvertedIndex(path);
+	}
+
+	@Override
+	public void toJsonObject(Path path) throws IOException {
+		freeze().toJsonObject(path);
+	}
+
+	@Override
+	public String toString() {
+		return freeze().toString();
+	}
+
+	/**
+	 * Waits until a tier of segments is full, merges it outside of the lock, and
+	 * publishes the merged segment. Runs in the background until a shutdown is
+	 * requested.
+	 */
+	private class Merger extends Thread {
+		/**
+		 * Initializes the merger as a daemon thread with a custom name.
+		 */
+		public Merger() {
+			setName("Merger" + getName());
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				List<FrozenInvertedIndex> candidates;
+				synchronized (lock) {
+					while ((candidates = candidates(segments)).isEmpty() && !shutdown) {
+						try {
+							lock.wait();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+					}
+					if (shutdown) {
+						log.debug("Segment merger shutting down...");
+						return;
+					}
+				}
+
+				log.debug("Merging {} segments.", candidates.size());
+				if (!publish(candidates, merge(candidates))) {
+					log.debug("Discarding merge of segments that were already merged.");
+				}
+			}
+		}
+	}
+}
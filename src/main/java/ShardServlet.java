@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers searches from a {@link SearchCoordinator} with the ranked results of
+ * this node's part of the corpus as JSON. The query words are already stemmed
+ * by the coordinator, so they are searched as given.
+ *
+ * The request parameters are {@code words} (separated by spaces), {@code mode}
+ * (partial, exact, wildcard, or fuzzy), {@code limit}, and {@code distance}
+ * for fuzzy searches. The response is a JSON array with one result object per
+ * line, and scores are written in full precision so the coordinator can merge
+ * the results of every node in exactly the same order as a single index.
+ *
+ * That only works if every score depends on nothing but its own document. A
+ * node ranked by BM25 uses the word and document statistics of its own part of
+ * the corpus, so its scores can not be compared with other nodes, and it
+ * answers with 409 Conflict instead of results.
+ *
+ * @author Charles Sy
+ *
+ */
+public class ShardServlet extends HttpServlet {
+	/**
+	 * Default serial version ID
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The inverted index of this node
+	 */
+	private final SearchableIndexInterface invertedIndex;
+
+	/**
+	 * The cache of search results, which may be shared with the search servlet
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * Constructor
+	 *
+	 * @param invertedIndex the inverted index of this node
+	 * @param cache the cache of search results
+	 */
+	public ShardServlet(SearchableIndexInterface invertedIndex, QueryCache cache) {
+		super();
+		this.invertedIndex = invertedIndex;
+		this.cache = cache;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		String words = request.getParameter("words");
+		String mode = request.getParameter("mode");
+		int limit;
+		int distance;
+		try {
+			limit = Math.max(0, Integer.parseInt(request.getParameter("limit")));
+			distance = "fuzzy".equals(mode) ? Integer.parseInt(request.getParameter("distance")) : 0;
+		} catch (NumberFormatException e) {
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		if (words == null || mode == null) {
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+
+		if (!invertedIndex.comparableScores()) {
+			response.setStatus(HttpServletResponse.SC_CONFLICT);
+			response.setContentType("text/plain");
+			response.setCharacterEncoding("UTF-8");
+			PrintWriter out = response.getWriter();
+			out.println("This node's scores depend on its own part of the corpus, so a coordinator can not merge them.");
+			out.flush();
+			return;
+		}
+
+		Set<String> queries = new TreeSet<>();
+		for (String word : words.split(" ")) {
+			if (!word.isEmpty()) {
+				queries.add(word);
+			}
+		}
+		List<InvertedIndex.SingleSearchResult> results;
+		switch (mode) {
+			case "exact":
+			case "partial":
+				results = cache.search(invertedIndex, queries, "exact".equals(mode), limit);
+				break;
+			case "wildcard":
+				results = cache.get(invertedIndex, mode, queries, limit, () -> invertedIndex.wildcardSearch(queries, limit));
+				break;
+			case "fuzzy":
+				results = cache.get(invertedIndex, mode + distance, queries, limit,
+						() -> invertedIndex.fuzzySearch(queries, distance, limit));
+				break;
+			default:
+				response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+				return;
+		}
+
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		PrintWriter out = response.getWriter();
+		write(results, out);
+		out.flush();
+		response.setStatus(HttpServletResponse.SC_OK);
+	}
+
+	/**
+	 * Writes the search results as a JSON array with one object per line.
+	 *
+	 * @param results the search results
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void write(Collection<InvertedIndex.SingleSearchResult> results, Writer writer) throws IOException {
+		writer.write('[');
+		Iterator<InvertedIndex.SingleSearchResult> iterator = results.iterator();
+		while (iterator.hasNext()) {
+			InvertedIndex.SingleSearchResult result = iterator.next();
+			writer.write("\n\t{\"where\": \"");
+			writer.write(escape(result.getLocation()));
+			writer.write("\", \"words\": ");
+			writer.write(Integer.toString(result.getWordCount()));
+			writer.write(", \"count\": ");
+			writer.write(Integer.toString(result.getMatches()));
+			writer.write(", \"score\": ");
+			writer.write(Double.toString(result.getScore()));
+			writer.write(iterator.hasNext() ? "}," : "}");
+		}
+		writer.write("\n]\n");
+	}
+
+	/**
+	 * Escapes the backslashes, quotes, and control characters of a JSON string.
+	 *
+	 * @param text the text to escape
+	 * @return the escaped text
+	 */
+	private static String escape(String text) {
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				escaped.append('\\').append(c);
+			}
+			else if (c < ' ') {
+				escaped.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,379 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe inverted index that partitions the locations into shards by
+ * hash, each an independent inverted index with its own document table and
+ * custom read/write lock. Every document is added to exactly one shard, so
+ * writers adding documents to different shards never wait for each other.
+ *
+ * Searches run on every shard in parallel and merge the ranked results of each
+ * shard. A search result only depends on the words of its own location, so
+ * the merged results are exactly the same as searching a single index.
+ *
+ * @author Charles Sy
+ *
+ */
+public class ShardedInvertedIndex implements WritableInvertedIndexInterface {
+	/** The shards, each holding the locations whose hash maps to that shard. */
+	private final InvertedIndex[] shards;
+
+	/** The lock used to protect concurrent access to each shard. */
+	private final SimpleReadWriteLock[] locks;
+
+	/** Incremented after every write. */
+	private final AtomicLong version;
+
+	/** The k-gram index of the words of every shard, updated by the shards as words are added. */
+	private final ConcurrentKGramIndex kgrams;
+
+	/**
+	 * Constructor initializes one shard per available processor
+	 *
+	 * @see #ShardedInvertedIndex(int)
+	 */
+	public ShardedInvertedIndex() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor initializes the shards and their locks
+	 *
+	 * @param shards the number of shards; should be at least 1
+	 */
+	public ShardedInvertedIndex(int shards) {
+		this.kgrams = new ConcurrentKGramIndex();
+		this.shards = new InvertedIndex[Math.max(1, shards)];
+		this.locks = new SimpleReadWriteLock[this.shards.length];
+		for (int i = 0; i < this.shards.length; i++) {
+			this.shards[i] = new InvertedIndex(new DocumentTable(), kgrams);
+			this.locks[i] = new SimpleReadWriteLock();
+		}
+		this.version = new AtomicLong();
+	}
+
+	@Override
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * Returns the number of shards.
+	 *
+	 * @return the number of shards
+	 */
+	public int shards() {
+		return shards.length;
+	}
+
+	/**
+	 * Returns the shard a location belongs to.
+	 *
+	 * @param location the location to lookup
+	 * @return the index of the shard
+	 */
+	private int shard(String location) {
+		return Math.floorMod(location.hashCode(), shards.length);
+	}
+
+	/**
+	 * Merges the other inverted index into the shard of its location while
+	 * holding only that shard's lock. A local index with locations in several
+	 * shards is first split into one local index per shard.
+	 *
+	 * @param other the other inverted index
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		Set<String> locations = other.counts().keySet();
+		if (locations.isEmpty()) {
+			return;
+		}
+		int first = shard(locations.iterator().next());
+		if (locations.stream().allMatch(location -> shard(location) == first)) {
+			addAll(first, other);
+		}
+		else {
+			InvertedIndex[] split = new InvertedIndex[shards.length];
+			for (var entry : other.postings().entrySet()) {
+				for (Map.Entry<String, PostingList> posting : entry.getValue().entrySet()) {
+					int i = shard(posting.getKey());
+					if (split[i] == null) {
+						split[i] = new InvertedIndex();
+					}
+					for (int position : posting.getValue().toIntArray()) {
+						split[i].add(entry.getKey(), posting.getKey(), position);
+					}
+				}
+			}
+			for (int i = 0; i < split.length; i++) {
+				if (split[i] != null) {
+					addAll(i, split[i]);
+				}
+			}
+		}
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Merges the other inverted index into a single shard.
+	 *
+	 * @param i the index of the shard
+	 * @param other the other inverted index
+	 */
+	private void addAll(int i, InvertedIndex other) {
+		locks[i].writeLock().lock();
+
+		try {
+			shards[i].addAll(other);
+		}
+		finally {
+			locks[i].writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return get().size();
+	}
+
+	@Override
+	public int size(String word) {
+		int size = -1;
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].readLock().lock();
+
+			try {
+				int found = shards[i].size(word);
+				if (found >= 0) {
+					size = Math.max(size, 0) + found;
+				}
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public int size(String word, String location) {
+		int i = shard(location);
+		locks[i].readLock().lock();
+
+		try {
+			return shards[i].size(word, location);
+		}
+		finally {
+			locks[i].readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(String word) {
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].readLock().lock();
+
+			try {
+				if (shards[i].contains(word)) {
+					return true;
+				}
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return size(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		int i = shard(location);
+		locks[i].readLock().lock();
+
+		try {
+			return shards[i].contains(word, location, position);
+		}
+		finally {
+			locks[i].readLock().unlock();
+		}
+	}
+
+	@Override
+	public Collection<String> get() {
+		TreeSet<String> words = new TreeSet<>();
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].readLock().lock();
+
+			try {
+				words.addAll(shards[i].get());
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Collection<String> get(String word) {
+		TreeSet<String> locations = new TreeSet<>();
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].readLock().lock();
+
+			try {
+				locations.addAll(shards[i].get(word));
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return Collections.unmodifiableSet(locations);
+	}
+
+	@Override
+	public Collection<Integer> get(String word, String location) {
+		int i = shard(location);
+		locks[i].readLock().lock();
+
+		try {
+			return shards[i].get(word, location);
+		}
+		finally {
+			locks[i].readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches every shard in parallel on the common fork/join pool, then keeps
+	 * the best k of the ranked results of all shards.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		List<ForkJoinTask<List<InvertedIndex.SingleSearchResult>>> tasks = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			int shard = i;
+			tasks.add(ForkJoinTask.adapt(() -> search(shard, queries, exact, k)).fork());
+		}
+		List<InvertedIndex.SingleSearchResult> results = new ArrayList<>();
+		for (ForkJoinTask<List<InvertedIndex.SingleSearchResult>> task : tasks) {
+			results.addAll(task.join());
+		}
+		return SearchableIndexInterface.top(results, k);
+	}
+
+	/**
+	 * Searches a single shard while holding its read lock.
+	 *
+	 * @param i the index of the shard
+	 * @param queries the parsed words from a single line of the query file
+	 * @param exact the flag that determines what type of search to perform
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results of the shard
+	 */
+	private List<InvertedIndex.SingleSearchResult> search(int i, Set<String> queries, boolean exact, int k) {
+		locks[i].readLock().lock();
+
+		try {
+			return shards[i].search(queries, exact, k);
+		}
+		finally {
+			locks[i].readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		return search(queries, true, 0);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		return search(queries, false, 0);
+	}
+
+	/**
+	 * Performs a wildcard search by finding the matching words in the k-gram
+	 * index shared by every shard, and then searching every shard for those
+	 * words exactly.
+	 *
+	 * @param queries the wildcard patterns from a single line of the query file
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return search(kgrams.wildcard(queries), true, k);
+	}
+
+	/**
+	 * Performs a fuzzy search by finding the similar words in the k-gram index
+	 * shared by every shard, and then searching every shard for those words
+	 * exactly.
+	 *
+	 * @param queries the parsed words from a single line of the query file
+	 * @param distance the largest Levenshtein distance allowed
+	 * @param k the maximum number of results to return, or 0 for all of them
+	 * @return a sorted list of at most k search results
+	 */
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return search(kgrams.fuzzy(queries, distance), true, k);
+	}
+
+	/**
+	 * Freezes each shard and merges them into a single read-only snapshot, which
+	 * restores the sorted order of locations across shards.
+	 *
+	 * @return the frozen inverted index
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		List<FrozenInvertedIndex> frozen = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].readLock().lock();
+
+			try {
+				frozen.add(shards[i].freeze());
+			}
+			finally {
+				locks[i].readLock().unlock();
+			}
+		}
+		return FrozenInvertedIndex.merge(frozen);
+	}
+
+	@Override
+	public void toJsonInvertedIndex(Path path) throws IOException {
+		freeze().toJsonInvertedIndex(path);
+	}
+
+	@Override
+	public void toJsonObject(Path path) throws IOException {
+		freeze().toJsonObject(path);
+	}
+
+	@Override
+	public String toString() {
+		return freeze().toString();
+	}
+}
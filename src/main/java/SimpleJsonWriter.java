@@ -1,4 +1,3 @@
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -10,12 +9,12 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.TreeMap;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
  * are used to separate elements and nested elements are indented using tabs.
+ * Files are written with {@link FastJsonWriter}, which produces exactly the
+ * same output.
  *
  * Warning: This class is not thread-safe. If multiple threads access this class
  * concurrently, access must be synchronized externally.
@@ -150,24 +149,23 @@ public class SimpleJsonWriter {
 	 * @param level the initial indent level
 	 * @throws IOException if an IO error occurs
 	 */
-	public static void asNested(Map<String, TreeMap<String, Set<Integer>>> elements, Writer writer,
+	public static void asNested(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements, Writer writer,
 			int level) throws IOException {
 		writer.write('{');
 		writer.write('\n');
-		int curr_size = 0;
-		if (curr_size != elements.size()) {
-			var iterator = elements.keySet().iterator();
+		if (!elements.isEmpty()) {
+			var iterator = elements.entrySet().iterator();
 			var first = iterator.next();
-			quote(first, writer, level + 1);
+			quote(first.getKey(), writer, level + 1);
 			writer.write(": ");
-			SimpleJsonWriter.asNestedArray(elements.get(first), writer, level + 2); 
+			SimpleJsonWriter.asNestedArray(first.getValue(), writer, level + 2); 
 			while (iterator.hasNext()) {
 				var next = iterator.next();
 				writer.write(',');
 				writer.write('\n');
-				quote(next, writer, level + 1);
+				quote(next.getKey(), writer, level + 1);
 				writer.write(": ");
-				SimpleJsonWriter.asNestedArray(elements.get(next), writer, level + 2);
+				SimpleJsonWriter.asNestedArray(next.getValue(), writer, level + 2);
 			}
 			writer.write('\n');
 			writer.write('}');
@@ -289,10 +287,10 @@ public class SimpleJsonWriter {
 			Map<String, ? extends Collection<InvertedIndex.SingleSearchResult>> elements, Path path) 
 			throws IOException {
 		try (
-				BufferedWriter writer = Files.newBufferedWriter(path,
-						StandardCharsets.UTF_8)
+				FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path,
+						StandardCharsets.UTF_8))
 		) {
-			asNestedResult(elements, writer, 0);
+			writer.asNestedResult(elements, 0);
 		}
 	}
 	
@@ -328,10 +326,10 @@ public class SimpleJsonWriter {
 	public static void asArray(Collection<Integer> elements, Path path)
 			throws IOException {
 		try (
-				BufferedWriter writer = Files.newBufferedWriter(path,
-						StandardCharsets.UTF_8)
+				FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path,
+						StandardCharsets.UTF_8))
 		) {
-			asArray(elements, writer, 0);
+			writer.asArray(elements, 0);
 		}
 	}
 
@@ -347,10 +345,10 @@ public class SimpleJsonWriter {
 	public static void asObject(Map<String, Integer> elements, Path path)
 			throws IOException {
 		try (
-				BufferedWriter writer = Files.newBufferedWriter(path,
-						StandardCharsets.UTF_8)
+				FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path,
+						StandardCharsets.UTF_8))
 		) {
-			asObject(elements, writer, 0);
+			writer.asObject(elements, 0);
 		}
 	}
 
@@ -367,10 +365,10 @@ public class SimpleJsonWriter {
 			Map<String, ? extends Collection<Integer>> elements, Path path)
 			throws IOException {
 		try (
-				BufferedWriter writer = Files.newBufferedWriter(path,
-						StandardCharsets.UTF_8)
+				FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path,
+						StandardCharsets.UTF_8))
 		) {
-			asNestedArray(elements, writer, 0);
+			writer.asNestedArray(elements, 0);
 		}
 	}
 	
@@ -381,13 +379,13 @@ public class SimpleJsonWriter {
 	 * @param path the file path to use
 	 * @throws IOException if an IO error occurs
 	 */
-	public static void asNested(Map<String, TreeMap<String, 
-			Set<Integer>>> elements, Path path) throws IOException {
+	public static void asNested(Map<String, ? extends Map<String, 
+			? extends Collection<Integer>>> elements, Path path) throws IOException {
 		try (
-				BufferedWriter writer = Files.newBufferedWriter(path,
-						StandardCharsets.UTF_8)
+				FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path,
+						StandardCharsets.UTF_8))
 		) {
-			asNested(elements, writer, 0);
+			writer.asNested(elements, 0);
 		}	
 	}
 
@@ -456,7 +454,7 @@ public class SimpleJsonWriter {
 	 * @return a {@link String} containing the elements in pretty JSON format
 	 *
 	 */
-	public static String asNested(Map<String, TreeMap<String, Set<Integer>>> elements) {
+	public static String asNested(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements) {
 		try {
 			StringWriter writer = new StringWriter();
 			asNested(elements, writer, 0);
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A thread-safe inverted index that publishes immutable snapshots. Writers add
+ * to a pending index, and every few documents or milliseconds the pending
+ * documents are frozen into a new segment of a {@link SegmentedInvertedIndex},
+ * which swaps in a new immutable list of segments. Publishing only freezes the
+ * pending documents, and the size-tiered merges of the segmented index run in
+ * the background, so the cost of a snapshot does not grow with the index.
+ * Every read uses the latest published segments without any locking, so
+ * searches never wait behind writers, at the cost of lagging slightly behind
+ * the documents added so far.
+ *
+ * A background thread also publishes pending documents once they are old
+ * enough, so documents become visible on time even when a crawl stalls or is
+ * slow to deliver its last pages.
+ *
+ * @author Charles Sy
+ *
+ */
+public class SnapshotInvertedIndex implements WritableInvertedIndexInterface {
+	/** The default number of documents added before publishing a new snapshot. */
+	public static final int DEFAULT_DOCUMENTS = 50;
+
+	/** The default number of milliseconds before publishing a new snapshot. */
+	public static final long DEFAULT_MILLIS = 1000;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The published segments. */
+	private final SegmentedInvertedIndex segments;
+
+	/** The documents added since the last snapshot, guarded by {@link #lock}. */
+	private InvertedIndex pending;
+
+	/** The number of documents in the pending index, guarded by {@link #lock}. */
+	private int documents;
+
+	/** When the pending index was started, guarded by {@link #lock}. */
+	private long started;
+
+	/** The number of documents added before publishing a new snapshot. */
+	private final int maxDocuments;
+
+	/** The number of nanoseconds before publishing a new snapshot. */
+	private final long maxNanos;
+
+	/** The lock object used to add to the pending index. */
+	private final Object lock;
+
+	/** The background thread that publishes pending documents on time. */
+	private final Publisher publisher;
+
+	/** Used to signal the publisher should stop, guarded by {@link #lock}. */
+	private boolean shutdown;
+
+	/**
+	 * Initializes an empty index with the default publishing intervals.
+	 *
+	 * @see #SnapshotInvertedIndex(int, long, UnaryOperator)
+	 */
+	public SnapshotInvertedIndex() {
+		this(DEFAULT_DOCUMENTS, DEFAULT_MILLIS, UnaryOperator.identity());
+	}
+
+	/**
+	 * Initializes an empty index and starts the background publisher.
+	 *
+	 * @param maxDocuments the number of documents added before publishing a new
+	 *        snapshot
+	 * @param maxMillis the number of milliseconds before publishing a new
+	 *        snapshot
+	 * @param configure applied to every published segment, such as to choose
+	 *        its scorer; a scorer that uses the statistics of the index, such
+	 *        as BM25, only sees those of each segment until {@link #freeze()}
+	 *        merges them
+	 * @see SegmentedInvertedIndex#SegmentedInvertedIndex(int, UnaryOperator)
+	 */
+	public SnapshotInvertedIndex(int maxDocuments, long maxMillis, UnaryOperator<FrozenInvertedIndex> configure) {
+		this.segments = new SegmentedInvertedIndex(SegmentedInvertedIndex.DEFAULT_MERGE_FACTOR, configure);
+		this.pending = new InvertedIndex();
+		this.documents = 0;
+		this.started = System.nanoTime();
+		this.maxDocuments = Math.max(1, maxDocuments);
+		this.maxNanos = Math.max(0, maxMillis) * 1_000_000;
+		this.lock = new Object();
+		this.shutdown = false;
+		this.publisher = new Publisher();
+		this.publisher.start();
+	}
+
+	/**
+	 * Adds the local index to the pending documents, and publishes a new snapshot
+	 * if enough documents or time have gone by. The new segment is frozen by the
+	 * calling thread after releasing the lock, so other writers can keep adding
+	 * to the next pending index.
+	 *
+	 * @param other the local inverted index
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		InvertedIndex batch = null;
+		synchronized (lock) {
+			pending.addAll(other);
+			documents++;
+			if (documents >= maxDocuments || System.nanoTime() - started >= maxNanos) {
+				batch = drain();
+			}
+			else if (documents == 1) {
+				// wake up the publisher to wait for this document to be old enough
+				lock.notifyAll();
+			}
+		}
+		if (batch != null) {
+			publish(batch);
+		}
+	}
+
+	/**
+	 * Replaces the pending index with an empty one. Must be called while holding
+	 * {@link #lock}.
+	 *
+	 * @return the pending index
+	 */
+	private InvertedIndex drain() {
+		InvertedIndex batch = pending;
+		pending = new InvertedIndex();
+		documents = 0;
+		started = System.nanoTime();
+		return batch;
+	}
+
+	/**
+	 * Freezes the batch into a new segment and publishes it, which takes time
+	 * proportional to the batch instead of the whole index.
+	 *
+	 * @param batch the pending documents to publish
+	 */
+	private void publish(InvertedIndex batch) {
+		segments.addAll(batch);
+	}
+
+	/**
+	 * Publishes any pending documents and returns a snapshot of every segment
+	 * merged into one, which also becomes the only segment searched afterwards.
+	 *
+	 * @return the frozen inverted index
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		InvertedIndex batch;
+		synchronized (lock) {
+			batch = drain();
+		}
+		publish(batch);
+		return segments.freeze();
+	}
+
+	/**
+	 * Stops publishing and merging segments in the background. The published
+	 * segments can still be searched, and pending documents are still published
+	 * by {@link #addAll(InvertedIndex)} and {@link #freeze()}.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+		segments.shutdown();
+	}
+
+	@Override
+	public long version() {
+		return segments.version();
+	}
+
+	@Override
+	public int size() {
+		return segments.size();
+	}
+
+	@Override
+	public int size(String word) {
+		return segments.size(word);
+	}
+
+	@Override
+	public int size(String word, String location) {
+		return segments.size(word, location);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return segments.contains(word);
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return segments.contains(word, location);
+	}
+
+	@Override
+	public boolean contains(String word, String location, Integer position) {
+		return segments.contains(word, location, position);
+	}
+
+	@Override
+	public Collection<String> get() {
+		return segments.get();
+	}
+
+	@Override
+	public Collection<String> get(String word) {
+		return segments.get(word);
+	}
+
+	@Override
+	public Collection<Integer> get(String word, String location) {
+		return segments.get(word, location);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> search(Set<String> queries, boolean exact, int k) {
+		return segments.search(queries, exact, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> wildcardSearch(Set<String> queries, int k) {
+		return segments.wildcardSearch(queries, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> fuzzySearch(Set<String> queries, int distance, int k) {
+		return segments.fuzzySearch(queries, distance, k);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> exactSearch(Set<String> queries) {
+		return segments.exactSearch(queries);
+	}
+
+	@Override
+	public List<InvertedIndex.SingleSearchResult> partialSearch(Set<String> queries) {
+		return segments.partialSearch(queries);
+	}
+
+	@Override
+	public void toJsonInvertedIndex(Path path) throws IOException {
+		segments.toJsonInvertedIndex(path);
+	}
+
+	@Override
+	public void toJsonObject(Path path) throws IOException {
+		segments.toJsonObject(path);
+	}
+
+	@Override
+	public String toString() {
+		return segments.toString();
+	}
+
+	/**
+	 * Waits until the oldest pending document has waited the maximum time, and
+	 * publishes the pending documents. Runs in the background until a shutdown
+	 * is requested.
+	 */
+	private class Publisher extends Thread {
+		/**
+		 * Initializes the publisher as a daemon thread with a custom name.
+		 */
+		public Publisher() {
+			setName("Publisher" + getName());
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				InvertedIndex batch;
+				synchronized (lock) {
+					try {
+						while (!shutdown) {
+							if (documents == 0) {
+								lock.wait();
+								continue;
+							}
+							long remaining = started + maxNanos - System.nanoTime();
+							if (remaining <= 0) {
+								break;
+							}
+							TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+						}
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					if (shutdown) {
+						log.debug("Snapshot publisher shutting down...");
+						return;
+					}
+					batch = drain();
+				}
+
+				log.debug("Publishing the pending documents on time.");
+				publish(batch);
+			}
+		}
+	}
+}
@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A query result builder that writes the results of each query as soon as
+ * they are found, instead of keeping every result until the end. Parsing only
+ * collects the unique cleaned queries, and the searches run while the output
+ * file is written, so the memory used by results stays flat no matter how many
+ * queries there are.
+ *
+ * In the default sorted mode the output is exactly the same as the other
+ * builders. Queries are searched in sorted order, and results that finish out
+ * of order wait in a small reorder buffer until every earlier query has been
+ * written; at most a window of queries is searched ahead of the writer. In
+ * NDJSON mode each query is written as a single JSON line in whatever order
+ * its search finishes.
+ *
+ * @author Charles Sy
+ *
+ */
+public class StreamingQueryResultBuilder implements QueryResultBuilderInterface {
+	/** The default number of queries searched ahead of the writer. */
+	public static final int DEFAULT_WINDOW = 64;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * The inverted index to search
+	 */
+	private final SearchableIndexInterface invertedIndex;
+
+	/**
+	 * The work queue for multithreading, or {@code null} to search on the
+	 * writing thread
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * The maximum number of results kept per query, or 0 for all of them
+	 */
+	private final int limit;
+
+	/**
+	 * The cache of search results, which may be shared with other builders
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * Whether to write unordered NDJSON instead of the sorted JSON object
+	 */
+	private final boolean ndjson;
+
+	/**
+	 * The number of queries searched ahead of the writer
+	 */
+	private final int window;
+
+	/**
+	 * Maps each cleaned query to the flag that determines what type of search
+	 * to perform, sorted unless writing NDJSON
+	 */
+	private final Map<String, Boolean> queries;
+
+	/**
+	 * The finished searches that have not been written yet, by query number,
+	 * guarded by this map's lock
+	 */
+	private final Map<Integer, Finished> ready;
+
+	/**
+	 * Constructor
+	 *
+	 * @param invertedIndex the inverted index
+	 * @param queue the work queue, or {@code null} to search on the writing thread
+	 * @param limit the maximum number of results kept per query, or 0 for all of them
+	 * @param cache the cache of search results
+	 * @param ndjson whether to write unordered NDJSON instead of the sorted JSON object
+	 */
+	public StreamingQueryResultBuilder(SearchableIndexInterface invertedIndex, WorkQueue queue, int limit,
+			QueryCache cache, boolean ndjson) {
+		this.invertedIndex = invertedIndex;
+		this.queue = queue;
+		this.limit = limit;
+		this.cache = cache;
+		this.ndjson = ndjson;
+		this.window = DEFAULT_WINDOW;
+		this.queries = ndjson ? new LinkedHashMap<>() : new TreeMap<>();
+		this.ready = new HashMap<>();
+	}
+
+	/**
+	 * Cleans and parses the query line, and remembers it if it is new. No
+	 * search is performed until the results are written.
+	 *
+	 * @param line the line to be cleaned and parsed
+	 * @param exact the flag that determines what type of search to perform
+	 */
+	@Override
+	public synchronized void parseQuery(String line, boolean exact) {
+		TreeSet<String> set = TextFileStemmer.uniqueStems(line);
+		if (!set.isEmpty()) {
+			queries.putIfAbsent(String.join(" ", set), exact);
+		}
+	}
+
+	/**
+	 * Searches every query and writes its results as soon as they are found.
+	 *
+	 * @param path the path given by user or default path if otherwise
+	 * @throws IOException if an IO error occurs
+	 */
+	@Override
+	public synchronized void toJsonNestedResult(Path path) throws IOException {
+		try (FastJsonWriter writer = new FastJsonWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+			if (ndjson) {
+				writeLines(writer);
+			}
+			else {
+				writeSorted(writer);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the search results.", e);
+		}
+	}
+
+	/**
+	 * Searches the queries in sorted order, at most a window ahead of the
+	 * writer, and writes them in the same format as
+	 * {@link SimpleJsonWriter#asNestedResult(Map, Writer, int)}.
+	 *
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 * @throws InterruptedException if interrupted while waiting for a search
+	 */
+	private void writeSorted(FastJsonWriter writer) throws IOException, InterruptedException {
+		writer.write("{");
+		writer.write('\n');
+		String[] keys = queries.keySet().toArray(new String[0]);
+		int started = 0;
+		for (int written = 0; written < keys.length; written++) {
+			while (started < keys.length && started - written < window) {
+				search(started, keys[started]);
+				started++;
+			}
+			write(keys, written, take(written).results(keys[written]), writer);
+		}
+		if (keys.length > 0) {
+			writer.write('\n');
+			writer.write('}');
+		}
+	}
+
+	/**
+	 * Writes one query and its results as the next member of the JSON object.
+	 *
+	 * @param keys the sorted cleaned queries
+	 * @param i the number of the query
+	 * @param results the search results
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void write(String[] keys, int i, List<InvertedIndex.SingleSearchResult> results,
+			FastJsonWriter writer) throws IOException {
+		if (i > 0) {
+			writer.write(',');
+			writer.write('\n');
+		}
+		writer.writeNestedResult(Map.entry(keys[i], results), 0);
+		writer.flush();
+	}
+
+	/**
+	 * Searches every query and writes one JSON line per query in the order the
+	 * searches finish.
+	 *
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 * @throws InterruptedException if interrupted while waiting for a search
+	 */
+	private void writeLines(FastJsonWriter writer) throws IOException, InterruptedException {
+		String[] keys = queries.keySet().toArray(new String[0]);
+		int started = 0;
+		for (int written = 0; written < keys.length; written++) {
+			while (started < keys.length && started - written < window) {
+				search(started, keys[started]);
+				started++;
+			}
+			Map.Entry<Integer, Finished> finished = takeAny();
+			String key = keys[finished.getKey()];
+			writeLine(key, finished.getValue().results(key), writer);
+		}
+	}
+
+	/**
+	 * Writes a query and its results as a single line of JSON.
+	 *
+	 * @param key the cleaned query
+	 * @param results the search results
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void writeLine(String key, List<InvertedIndex.SingleSearchResult> results,
+			FastJsonWriter writer) throws IOException {
+		writer.write("{\"query\": \"");
+		writer.write(key);
+		writer.write("\", \"results\": [");
+		for (int i = 0; i < results.size(); i++) {
+			InvertedIndex.SingleSearchResult result = results.get(i);
+			writer.write(i == 0 ? "{\"where\": \"" : ", {\"where\": \"");
+			writer.write(result.getLocation());
+			writer.write("\", \"count\": ");
+			writer.write(result.getMatches());
+			writer.write(", \"score\": ");
+			writer.writeScore(result.getScore());
+			writer.write('}');
+		}
+		writer.write("]}");
+		writer.write('\n');
+		writer.flush();
+	}
+
+	/**
+	 * Searches a query, using the work queue if there is one. The search is
+	 * always added to the reorder buffer, along with its exception if it fails,
+	 * so the writer never waits forever and fails instead of writing a query
+	 * without results.
+	 *
+	 * @param i the number of the query
+	 * @param key the cleaned query
+	 */
+	private void search(int i, String key) {
+		Runnable task = () -> {
+			List<InvertedIndex.SingleSearchResult> results = null;
+			RuntimeException failure = null;
+			try {
+				Set<String> set = new TreeSet<>(Arrays.asList(key.split(" ")));
+				results = cache.search(invertedIndex, set, queries.get(key), limit);
+			}
+			catch (RuntimeException e) {
+				log.warn("Search of \"{}\" failed: {}", key, e.getMessage());
+				failure = e;
+			}
+			finally {
+				synchronized (ready) {
+					ready.put(i, new Finished(results, failure));
+					ready.notifyAll();
+				}
+			}
+		};
+		if (queue != null) {
+			queue.execute(task);
+		}
+		else {
+			task.run();
+		}
+	}
+
+	/**
+	 * Waits for the search of any query and removes it from the buffer.
+	 *
+	 * @return the number of the query and its finished search
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private Map.Entry<Integer, Finished> takeAny() throws InterruptedException {
+		synchronized (ready) {
+			while (ready.isEmpty()) {
+				ready.wait();
+			}
+			Integer i = ready.keySet().iterator().next();
+			return Map.entry(i, ready.remove(i));
+		}
+	}
+
+	/**
+	 * Waits for the search of a query and removes it from the reorder buffer.
+	 *
+	 * @param i the number of the query
+	 * @return the finished search
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private Finished take(int i) throws InterruptedException {
+		synchronized (ready) {
+			while (!ready.containsKey(i)) {
+				ready.wait();
+			}
+			return ready.remove(i);
+		}
+	}
+
+	/**
+	 * The search of a single query once it is done, holding either its results
+	 * or the exception that stopped it.
+	 */
+	private static class Finished {
+		/**
+		 * The search results, or {@code null} if the search failed
+		 */
+		private final List<InvertedIndex.SingleSearchResult> results;
+
+		/**
+		 * The exception thrown by the search, or {@code null} if there was none
+		 */
+		private final RuntimeException failure;
+
+		/**
+		 * Constructor
+		 *
+		 * @param results the search results, or {@code null} if the search failed
+		 * @param failure the exception thrown by the search, or {@code null}
+		 */
+		public Finished(List<InvertedIndex.SingleSearchResult> results, RuntimeException failure) {
+			this.results = results;
+			this.failure = failure;
+		}
+
+		/**
+		 * Returns the search results, or rethrows the failure of the search.
+		 *
+		 * @param key the cleaned query
+		 * @return the search results
+		 * @throws IOException if the search failed
+		 */
+		public List<InvertedIndex.SingleSearchResult> results(String key) throws IOException {
+			if (results == null) {
+				throw new IOException("Unable to search the query: " + key, failure);
+			}
+			return results;
+		}
+	}
+}
@@ -9,7 +9,6 @@ import java.util.TreeSet;
 
 import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * Utility class for parsing and stemming text and text files into collections
@@ -43,16 +42,31 @@ public class TextFileStemmer {
 	}
 
 	/**
-	 * Parses line into string array adds cleaned and stemmed parsed words into collection
+	 * Splits the line into words and adds the cleaned and stemmed words into the collection
 	 * 
 	 * @param line the line of words to clean, split, and stem
 	 * @param stemmer the stemmer to use
 	 * @param stems the collection to add the stemmed words
 	 */
 	public static void stemLine(String line, Stemmer stemmer, Collection<String> stems) {
-		String[] parsed = TextParser.parse(line);
-		for (String word : parsed) {
-			stems.add(stemmer.stem(word).toString());
+		stemLine(line, stemmer, new TextTokenizer(), stems);
+	}
+
+	/**
+	 * Splits the line with the tokenizer and adds the stem of every word into
+	 * the collection.
+	 *
+	 * @param line the line of words to clean, split, and stem
+	 * @param stemmer the stemmer to use
+	 * @param tokenizer the tokenizer to reuse
+	 * @param stems the collection to add the stemmed words
+	 *
+	 * @see TextTokenizer
+	 */
+	public static void stemLine(String line, Stemmer stemmer, TextTokenizer tokenizer, Collection<String> stems) {
+		tokenizer.reset(line);
+		while (tokenizer.next()) {
+			stems.add(stemmer.stem(tokenizer.token()).toString());
 		}
 	}
 
@@ -62,12 +76,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a list of cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
-	 * @see #DEFAULT
+	 * @see CachingStemmer#shared()
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		return listStems(line, new SnowballStemmer(DEFAULT));
+		return listStems(line, CachingStemmer.shared());
 	}
 
 	/**
@@ -86,10 +99,11 @@ public class TextFileStemmer {
 		try (BufferedReader read = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);) {
 			//create arrayList
 			ArrayList<String> list = new ArrayList<>();
-			Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+			Stemmer stemmer = CachingStemmer.shared();
+			TextTokenizer tokenizer = new TextTokenizer();
 			String line = null;
 			while ((line = read.readLine()) != null) {
-				stemLine(line, stemmer, list);
+				stemLine(line, stemmer, tokenizer, list);
 			}
 			return list;
 		}
@@ -102,12 +116,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
-	 * @see #DEFAULT
+	 * @see CachingStemmer#shared()
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, CachingStemmer.shared());
 	}
 
 	/**
@@ -145,9 +158,10 @@ public class TextFileStemmer {
 			//create treeSet
 			TreeSet<String> set = new TreeSet<>();
 			String line = null;
-			Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+			Stemmer stemmer = CachingStemmer.shared();
+			TextTokenizer tokenizer = new TextTokenizer();
 			while ((line = read.readLine()) != null) {
-				TextFileStemmer.stemLine(line, stemmer, set);
+				TextFileStemmer.stemLine(line, stemmer, tokenizer, set);
 			}
 			return set;
 		}
@@ -0,0 +1,330 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+
+/**
+ * Splits text into the same cleaned words as {@link TextParser#parse(String)},
+ * without regular expressions and without creating a string for every word.
+ * Each line is scanned once, letters are lowercased into a reusable buffer, and
+ * every other character is either dropped or ends the current word. Only lines
+ * with non-ASCII characters are normalized first, since decomposing accented
+ * letters and the locale rules of lowercasing can change those words. Lines
+ * of UTF-8 bytes can be split the same way, and ASCII lines are then read
+ * straight from the bytes without being decoded.
+ *
+ * Use it like an iterator:
+ *
+ * <pre>
+ * tokenizer.reset(line);
+ * while (tokenizer.next()) {
+ * 	stemmer.stem(tokenizer.token());
+ * }
+ * </pre>
+ *
+ * Warning: This class is not thread-safe, since each instance reuses its
+ * buffers. Use one instance per thread.
+ *
+ * @author Charles Sy
+ *
+ */
+public class TextTokenizer {
+	/** Nothing but whitespace has been seen on the current line. */
+	private static final int START = 0;
+
+	/**
+	 * The current line starts with a space that is not removed by stripping, so
+	 * an empty word comes before its next word.
+	 */
+	private static final int PENDING = 1;
+
+	/** A word has been returned on the current line. */
+	private static final int WORDS = 2;
+
+	/**
+	 * Whether uppercase ASCII letters lowercase to ASCII letters in the default
+	 * locale, which is not true in Turkish
+	 */
+	private final boolean asciiLowercase;
+
+	/**
+	 * The current word, reused for every word
+	 */
+	private final StringBuilder token;
+
+	/**
+	 * The cleaned text of a non-ASCII line before it is lowercased
+	 */
+	private final StringBuilder cleaned;
+
+	/**
+	 * Decodes the lines of bytes that are not ASCII
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * The text being split, either the original line or its cleaned and
+	 * lowercased copy, or {@code null} if splitting bytes
+	 */
+	private String text;
+
+	/**
+	 * The ASCII bytes being split, or {@code null} if splitting text
+	 */
+	private ByteBuffer bytes;
+
+	/**
+	 * Whether the text or bytes are an original ASCII line
+	 */
+	private boolean ascii;
+
+	/**
+	 * The index of the next character to scan
+	 */
+	private int index;
+
+	/**
+	 * The index after the last character to scan
+	 */
+	private int end;
+
+	/**
+	 * What has been seen on the current line, which is {@link #START},
+	 * {@link #PENDING}, or {@link #WORDS}
+	 */
+	private int state;
+
+	/**
+	 * Initializes a tokenizer with no text.
+	 */
+	public TextTokenizer() {
+		this.asciiLowercase = "I".toLowerCase().equals("i");
+		this.token = new StringBuilder();
+		this.cleaned = new StringBuilder();
+		this.decoder = StandardCharsets.UTF_8.newDecoder();
+		reset("");
+	}
+
+	/**
+	 * Starts splitting a new line of text.
+	 *
+	 * @param line the text to clean and split
+	 */
+	public void reset(String line) {
+		this.token.setLength(0);
+		this.state = START;
+		this.index = 0;
+		this.bytes = null;
+		this.ascii = asciiLowercase && isAscii(line);
+		if (ascii) {
+			this.text = line;
+			this.end = line.length();
+			return;
+		}
+
+		// the same steps as TextParser.clean without the regular expression
+		String normalized = Normalizer.normalize(line, Normalizer.Form.NFD);
+		cleaned.setLength(0);
+		for (int i = 0; i < normalized.length();) {
+			int c = normalized.codePointAt(i);
+			if (Character.isAlphabetic(c) || isSpace(c)) {
+				cleaned.appendCodePoint(c);
+			}
+			i += Character.charCount(c);
+		}
+		this.text = cleaned.toString().toLowerCase();
+
+		// the same bounds as String.strip
+		this.end = text.length();
+		while (index < end && Character.isWhitespace(text.codePointAt(index))) {
+			index += Character.charCount(text.codePointAt(index));
+		}
+		while (end > index && Character.isWhitespace(text.codePointBefore(end))) {
+			end -= Character.charCount(text.codePointBefore(end));
+		}
+	}
+
+	/**
+	 * Starts splitting a line of UTF-8 bytes. ASCII lines are split straight
+	 * from the bytes, and other lines are decoded and split like text.
+	 *
+	 * A very long line may be split at whitespace into several parts. Every
+	 * part after the first is continued, which gives the same words as if the
+	 * line had not been split.
+	 *
+	 * @param buffer the bytes to split
+	 * @param start the index of the first byte of the line
+	 * @param end the index after the last byte of the line
+	 * @param continued whether the bytes continue the line of the previous bytes
+	 * @throws CharacterCodingException if the bytes are not valid UTF-8
+	 */
+	public void reset(ByteBuffer buffer, int start, int end, boolean continued) throws CharacterCodingException {
+		int previous = continued ? state : START;
+		if (!asciiLowercase || !isAscii(buffer, start, end)) {
+			reset(decoder.decode(buffer.duplicate().limit(end).position(start)).toString());
+			if (previous != START) {
+				skipSpaces();
+			}
+		}
+		else {
+			this.token.setLength(0);
+			this.text = null;
+			this.bytes = buffer;
+			this.ascii = true;
+			this.index = start;
+			this.end = end;
+		}
+		this.state = previous;
+	}
+
+	/**
+	 * Moves to the next word.
+	 *
+	 * @return true if there is another word
+	 */
+	public boolean next() {
+		token.setLength(0);
+		return ascii ? nextAscii() : nextUnicode();
+	}
+
+	/**
+	 * Returns the current word. The returned buffer is reused by the next call
+	 * to {@link #next()} or {@link #reset(String)}, so it must be copied to be
+	 * kept.
+	 *
+	 * @return the current word
+	 */
+	public CharSequence token() {
+		return token;
+	}
+
+	/**
+	 * Moves to the next word of an ASCII line. Letters are lowercased into the
+	 * buffer, whitespace ends the word, and everything else is dropped, so a
+	 * run of whitespace and symbols never creates an empty word.
+	 *
+	 * @return true if there is another word
+	 */
+	private boolean nextAscii() {
+		while (index < end) {
+			char c = bytes == null ? text.charAt(index++) : (char) bytes.get(index++);
+			if (c >= 'A' && c <= 'Z') {
+				c = (char) (c + ('a' - 'A'));
+			}
+			if (c >= 'a' && c <= 'z') {
+				if (state == PENDING) {
+					//the empty word comes first, so read this letter again next time
+					index--;
+					return word();
+				}
+				token.append(c);
+			}
+			else if ((c == ' ' || (c >= '\t' && c <= '\r')) && token.length() > 0) {
+				return word();
+			}
+		}
+		return token.length() > 0 && word();
+	}
+
+	/**
+	 * Remembers that a word was found on the current line.
+	 *
+	 * @return true
+	 */
+	private boolean word() {
+		state = WORDS;
+		return true;
+	}
+
+	/**
+	 * Moves to the next word of a cleaned and lowercased line, splitting it the
+	 * same way as {@link TextParser#split(String)}. Like that method, a line
+	 * that starts with a space that is not removed by stripping, such as a
+	 * non-breaking space, has an empty first word.
+	 *
+	 * @return true if there is another word
+	 */
+	private boolean nextUnicode() {
+		if (state == START && index < end && isSpace(text.codePointAt(index))) {
+			state = PENDING;
+			skipSpaces();
+		}
+		if (index >= end) {
+			return false;
+		}
+		if (state == PENDING) {
+			return word();
+		}
+		while (index < end) {
+			int c = text.codePointAt(index);
+			if (isSpace(c)) {
+				skipSpaces();
+				break;
+			}
+			token.appendCodePoint(c);
+			index += Character.charCount(c);
+		}
+		return word();
+	}
+
+	/**
+	 * Skips every space at the current index.
+	 */
+	private void skipSpaces() {
+		while (index < end && isSpace(text.codePointAt(index))) {
+			index += Character.charCount(text.codePointAt(index));
+		}
+	}
+
+	/**
+	 * Checks whether every character of the text is ASCII.
+	 *
+	 * @param text the text to check
+	 * @return true if the text only has ASCII characters
+	 */
+	private static boolean isAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether every byte of part of a buffer is ASCII.
+	 *
+	 * @param buffer the bytes to check
+	 * @param start the index of the first byte to check
+	 * @param end the index after the last byte to check
+	 * @return true if the bytes are all ASCII
+	 */
+	private static boolean isAscii(ByteBuffer buffer, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (buffer.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a character is whitespace the same way as
+	 * {@code (?U)\p{Space}} in {@link TextParser}, which is different from
+	 * {@link Character#isWhitespace(int)}.
+	 *
+	 * @param c the code point to check
+	 * @return true if it is whitespace
+	 */
+	private static boolean isSpace(int c) {
+		switch (Character.getType(c)) {
+			case Character.SPACE_SEPARATOR:
+			case Character.LINE_SEPARATOR:
+			case Character.PARAGRAPH_SEPARATOR:
+				return true;
+			default:
+				return (c >= '\t' && c <= '\r') || c == 0x85;
+		}
+	}
+}
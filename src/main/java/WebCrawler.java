@@ -3,8 +3,6 @@ import java.net.URL;
 import java.util.HashSet;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * @author Charles Sy
@@ -19,7 +17,7 @@ public class WebCrawler {
 	/**
 	 * The thread safe inverted index
 	 */
-	private final ConcurrentInvertedIndex invertedIndex;
+	private final WritableInvertedIndexInterface invertedIndex;
 	
 	/**
 	 * The set that keeps track of URLs being processed
@@ -37,7 +35,7 @@ public class WebCrawler {
 	 * @param invertedIndex the thread safe inverted index
 	 * @param queue the work queue
 	 */
-	public WebCrawler(WorkQueue queue, ConcurrentInvertedIndex invertedIndex) {
+	public WebCrawler(WorkQueue queue, WritableInvertedIndexInterface invertedIndex) {
 		this.queue = queue;
 		this.invertedIndex = invertedIndex;
 		this.check = new HashSet<>();
@@ -117,9 +115,11 @@ public class WebCrawler {
 				//Clean, parse, and stem the resulting text to populate the inverted index 
 				InvertedIndex local = new InvertedIndex();
 				int counter = 1; //position start at index 1
-				Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
-				for (String word : TextParser.parse(cleaned)) {
-					local.add(stemmer.stem(word).toString(), url.toString(), counter);
+				Stemmer stemmer = CachingStemmer.shared();
+				TextTokenizer tokenizer = new TextTokenizer();
+				tokenizer.reset(cleaned);
+				while (tokenizer.next()) {
+					local.add(stemmer.stem(tokenizer.token()).toString(), url.toString(), counter);
 					counter++;
 				}
 				invertedIndex.addAll(local);
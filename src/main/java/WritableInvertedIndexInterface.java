@@ -0,0 +1,28 @@
+/**
+ * The interface implemented by the versions of the inverted index that are
+ * still being built. Builders add one document at a time by building a local
+ * {@link InvertedIndex} and merging it with {@link #addAll(InvertedIndex)},
+ * and {@link #freeze()} compacts everything added so far into a read-only
+ * {@link FrozenInvertedIndex}.
+ *
+ * @author Charles Sy
+ *
+ */
+public interface WritableInvertedIndexInterface extends InvertedIndexInterface {
+
+	/**
+	 * Merges a local inverted index, usually holding a single document, into
+	 * this index.
+	 *
+	 * @param other the other inverted index
+	 */
+	public void addAll(InvertedIndex other);
+
+	/**
+	 * Returns a read-only snapshot of everything added to the index so far.
+	 *
+	 * @return the frozen inverted index
+	 */
+	public FrozenInvertedIndex freeze();
+
+}